@@ -0,0 +1,103 @@
+package aman.lyricsview.benchmark;
+
+import java.util.Random;
+
+// Deterministic LRC documents for the benchmarks, one per lyric style
+public final class LrcInputs {
+
+    public enum Format {
+        LINE_SYNCED,
+        WORD_SYNCED,
+        DUET,
+        BACKGROUND,
+        PLAIN
+    }
+
+    private static final String[] WORDS = {
+        "love", "night", "light", "you", "me", "heart", "dancing", "forever", "away", "home",
+        "burning", "sky", "the", "and", "we", "are", "never", "going", "back", "tonight",
+        "\u6642\u9593", "\u5922", "\u541B\u3068", "\u3055\u3088\u306A\u3089", "\u661F\u7A7A", "\u5FC3", "\u6C38\u8FDC", "\u6708\u4EAE"
+    };
+
+    private LrcInputs() {
+    }
+
+    public static String generate(Format format, int lineCount) {
+        Random random = new Random(lineCount * 31L + format.ordinal());
+        StringBuilder sb = new StringBuilder(lineCount * 96);
+        sb.append("[ar:Benchmark]\n[ti:").append(format).append(' ').append(lineCount).append("]\n");
+
+        // Keep every timestamp below 100 minutes so the tags stay two-digit
+        long step = Math.min(4000, 5_900_000L / Math.max(lineCount, 1));
+        long time = 1000;
+        for (int i = 0; i < lineCount; i++) {
+            int wordCount = 3 + random.nextInt(6);
+            switch (format) {
+                case LINE_SYNCED:
+                    appendTag(sb, '[', time, ']');
+                    appendWords(sb, random, wordCount);
+                    break;
+                case WORD_SYNCED:
+                    appendTag(sb, '[', time, ']');
+                    appendTimedWords(sb, random, wordCount, time, step);
+                    break;
+                case DUET:
+                    appendTag(sb, '[', time, ']');
+                    sb.append(i % 2 == 0 ? "v1:" : "v2:");
+                    appendTimedWords(sb, random, wordCount, time, step);
+                    break;
+                case BACKGROUND:
+                    appendTag(sb, '[', time, ']');
+                    appendTimedWords(sb, random, wordCount, time, step);
+                    if (i % 3 == 0) {
+                        sb.append('\n');
+                        appendTag(sb, '[', time, ']');
+                        sb.append("[bg:");
+                        appendTimedWords(sb, random, 2, time + step / 4, step / 2);
+                        sb.append(']');
+                    }
+                    break;
+                case PLAIN:
+                    appendWords(sb, random, wordCount);
+                    break;
+            }
+            sb.append('\n');
+            time += step;
+        }
+        return sb.toString();
+    }
+
+    private static void appendWords(StringBuilder sb, Random random, int count) {
+        for (int w = 0; w < count; w++) {
+            if (w > 0) sb.append(' ');
+            sb.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+    }
+
+    // "<mm:ss.xx>word <mm:ss.xx>word ... <mm:ss.xx>" with the closing tag as the line's end time
+    private static void appendTimedWords(StringBuilder sb, Random random, int count, long start, long span) {
+        long wordStep = Math.max(span / (count + 1), 10);
+        for (int w = 0; w < count; w++) {
+            appendTag(sb, '<', start + w * wordStep, '>');
+            sb.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+        }
+        appendTag(sb, '<', start + count * wordStep, '>');
+    }
+
+    private static void appendTag(StringBuilder sb, char open, long timeMs, char close) {
+        long minutes = timeMs / 60000;
+        long seconds = (timeMs / 1000) % 60;
+        long centis = (timeMs % 1000) / 10;
+        sb.append(open);
+        appendTwoDigits(sb, minutes);
+        sb.append(':');
+        appendTwoDigits(sb, seconds);
+        sb.append('.');
+        appendTwoDigits(sb, centis);
+        sb.append(close);
+    }
+
+    private static void appendTwoDigits(StringBuilder sb, long value) {
+        sb.append((char) ('0' + value / 10)).append((char) ('0' + value % 10));
+    }
+}
@@ -0,0 +1,59 @@
+package aman.lyricsview.benchmark;
+
+import aman.lyricsview.LrcParser;
+import aman.lyricsview.LyricLine;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+// Run with the gc profiler (configured in build.gradle) to get gc.alloc.rate.norm, the
+// bytes allocated per parse, next to the throughput.
+@State(Scope.Benchmark)
+public class LrcParserBenchmark {
+
+    @Param({"LINE_SYNCED", "WORD_SYNCED", "DUET", "BACKGROUND", "PLAIN"})
+    public LrcInputs.Format format;
+
+    @Param({"50", "500", "5000", "20000"})
+    public int lines;
+
+    private String text;
+    private byte[] bytes;
+    private ByteBuffer directBuffer;
+
+    @Setup
+    public void setUp() {
+        text = LrcInputs.generate(format, lines);
+        bytes = text.getBytes(StandardCharsets.UTF_8);
+        directBuffer = ByteBuffer.allocateDirect(bytes.length);
+        directBuffer.put(bytes).flip();
+    }
+
+    @Benchmark
+    public List<LyricLine> parseStream() {
+        return LrcParser.parse(new ByteArrayInputStream(bytes));
+    }
+
+    @Benchmark
+    public List<LyricLine> parseBytes() {
+        return LrcParser.parse(ByteBuffer.wrap(bytes));
+    }
+
+    @Benchmark
+    public List<LyricLine> parseDirectBuffer() {
+        return LrcParser.parse(directBuffer);
+    }
+
+    @Benchmark
+    public List<LyricLine> parseString() {
+        return LrcParser.parse(text);
+    }
+}
@@ -0,0 +1,246 @@
+package aman.lyricsview;
+
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+// Flat, primitive-backed form of a parsed lyrics list. Lines and words are addressed by
+// index: the words of line i are [getFirstWord(i), getWordEnd(i)) and all word texts live
+// back to back in one shared char[], so a whole line is one contiguous run of text.
+public final class CompiledLyrics {
+
+    public static final CompiledLyrics EMPTY = compile(null);
+
+    private final long[] lineStartTimes;
+    private final long[] lineEndTimes;
+    private final int[] lineWordStarts; // lineCount + 1 entries
+    private final long[] wordTimes;
+    private final int[] wordTextStarts; // wordCount + 1 entries
+    private final char[] text;
+    private final BitSet backgroundLines;
+    private final BitSet secondaryVocalLines;
+    private final BitSet wordSyncedLines;
+    // Derived per word: when its highlight completes (next word's time, or the line end
+    // for the last word) and 1 / duration, so progress is one multiply per frame
+    private final long[] wordEndTimes;
+    private final float[] wordInverseDurations;
+
+    CompiledLyrics(long[] lineStartTimes, long[] lineEndTimes, int[] lineWordStarts,
+                   long[] wordTimes, int[] wordTextStarts, char[] text,
+                   BitSet backgroundLines, BitSet secondaryVocalLines, BitSet wordSyncedLines) {
+        this(lineStartTimes, lineEndTimes, lineWordStarts, wordTimes, wordTextStarts, text,
+                backgroundLines, secondaryVocalLines, wordSyncedLines, null, 0);
+    }
+
+    // The derived word timings of the first prefixLines lines are copied from prefix
+    private CompiledLyrics(long[] lineStartTimes, long[] lineEndTimes, int[] lineWordStarts,
+                           long[] wordTimes, int[] wordTextStarts, char[] text,
+                           BitSet backgroundLines, BitSet secondaryVocalLines, BitSet wordSyncedLines,
+                           @Nullable CompiledLyrics prefix, int prefixLines) {
+        this.lineStartTimes = lineStartTimes;
+        this.lineEndTimes = lineEndTimes;
+        this.lineWordStarts = lineWordStarts;
+        this.wordTimes = wordTimes;
+        this.wordTextStarts = wordTextStarts;
+        this.text = text;
+        this.backgroundLines = backgroundLines;
+        this.secondaryVocalLines = secondaryVocalLines;
+        this.wordSyncedLines = wordSyncedLines;
+
+        int wordCount = wordTimes.length;
+        wordEndTimes = new long[wordCount];
+        wordInverseDurations = new float[wordCount];
+        if (prefix != null) {
+            int prefixWords = lineWordStarts[prefixLines];
+            System.arraycopy(prefix.wordEndTimes, 0, wordEndTimes, 0, prefixWords);
+            System.arraycopy(prefix.wordInverseDurations, 0, wordInverseDurations, 0, prefixWords);
+        }
+        for (int line = prefixLines; line < lineStartTimes.length; line++) {
+            int end = lineWordStarts[line + 1];
+            for (int w = lineWordStarts[line]; w < end; w++) {
+                long wordEnd = (w + 1 < end) ? wordTimes[w + 1] : lineEndTimes[line];
+                long duration = wordEnd - wordTimes[w];
+                wordEndTimes[w] = wordEnd;
+                wordInverseDurations[w] = 1f / (duration <= 0 ? 1 : duration);
+            }
+        }
+    }
+
+    public static CompiledLyrics compile(@Nullable List<LyricLine> lines) {
+        return compile(null, lines, 0);
+    }
+
+    // Same as compile(lines) when the first prefixLines of lines are already compiled, unchanged,
+    // in prefix, e.g. the previous snapshot of a streamed file. Those are copied as arrays and
+    // only the lines after them are walked.
+    public static CompiledLyrics compile(@Nullable CompiledLyrics prefix, @Nullable List<LyricLine> lines, int prefixLines) {
+        if (prefix == null) prefixLines = 0;
+        int lineCount = lines == null ? 0 : lines.size();
+        int prefixWords = prefixLines == 0 ? 0 : prefix.lineWordStarts[prefixLines];
+        int prefixText = prefixLines == 0 ? 0 : prefix.wordTextStarts[prefixWords];
+        int wordCount = prefixWords;
+        int textLength = prefixText;
+        for (int i = prefixLines; i < lineCount; i++) {
+            List<LyricWord> words = lines.get(i).words;
+            wordCount += words.size();
+            for (int w = 0; w < words.size(); w++) {
+                String wordText = words.get(w).text;
+                if (wordText != null) textLength += wordText.length();
+            }
+        }
+
+        long[] lineStartTimes = new long[lineCount];
+        long[] lineEndTimes = new long[lineCount];
+        int[] lineWordStarts = new int[lineCount + 1];
+        long[] wordTimes = new long[wordCount];
+        int[] wordTextStarts = new int[wordCount + 1];
+        char[] text = new char[textLength];
+        BitSet backgroundLines = new BitSet(lineCount);
+        BitSet secondaryVocalLines = new BitSet(lineCount);
+        BitSet wordSyncedLines = new BitSet(lineCount);
+        if (prefixLines > 0) {
+            System.arraycopy(prefix.lineStartTimes, 0, lineStartTimes, 0, prefixLines);
+            System.arraycopy(prefix.lineEndTimes, 0, lineEndTimes, 0, prefixLines);
+            System.arraycopy(prefix.lineWordStarts, 0, lineWordStarts, 0, prefixLines);
+            System.arraycopy(prefix.wordTimes, 0, wordTimes, 0, prefixWords);
+            System.arraycopy(prefix.wordTextStarts, 0, wordTextStarts, 0, prefixWords);
+            System.arraycopy(prefix.text, 0, text, 0, prefixText);
+            backgroundLines.or(prefix.backgroundLines.get(0, prefixLines));
+            secondaryVocalLines.or(prefix.secondaryVocalLines.get(0, prefixLines));
+            wordSyncedLines.or(prefix.wordSyncedLines.get(0, prefixLines));
+        }
+
+        int word = prefixWords;
+        int offset = prefixText;
+        for (int i = prefixLines; i < lineCount; i++) {
+            LyricLine line = lines.get(i);
+            lineStartTimes[i] = line.startTime;
+            lineEndTimes[i] = line.endTime;
+            lineWordStarts[i] = word;
+            if (line.isBackground) backgroundLines.set(i);
+            if (line.vocalType == 2) secondaryVocalLines.set(i);
+            if (line.isWordSynced) wordSyncedLines.set(i);
+
+            for (int w = 0; w < line.words.size(); w++) {
+                LyricWord lyricWord = line.words.get(w);
+                wordTimes[word] = lyricWord.time;
+                wordTextStarts[word] = offset;
+                if (lyricWord.text != null) {
+                    lyricWord.text.getChars(0, lyricWord.text.length(), text, offset);
+                    offset += lyricWord.text.length();
+                }
+                word++;
+            }
+        }
+        lineWordStarts[lineCount] = word;
+        wordTextStarts[wordCount] = offset;
+
+        return new CompiledLyrics(lineStartTimes, lineEndTimes, lineWordStarts, wordTimes,
+                wordTextStarts, text, backgroundLines, secondaryVocalLines, wordSyncedLines, prefix, prefixLines);
+    }
+
+    public int getLineCount() {
+        return lineStartTimes.length;
+    }
+
+    public int getWordCount() {
+        return wordTimes.length;
+    }
+
+    public boolean isEmpty() {
+        return lineStartTimes.length == 0;
+    }
+
+    public long getLineStartTime(int line) {
+        return lineStartTimes[line];
+    }
+
+    public long getLineEndTime(int line) {
+        return lineEndTimes[line];
+    }
+
+    public boolean isBackground(int line) {
+        return backgroundLines.get(line);
+    }
+
+    public boolean isWordSynced(int line) {
+        return wordSyncedLines.get(line);
+    }
+
+    // 1 = v1, 2 = v2
+    public int getVocalType(int line) {
+        return secondaryVocalLines.get(line) ? 2 : 1;
+    }
+
+    public int getFirstWord(int line) {
+        return lineWordStarts[line];
+    }
+
+    // Exclusive
+    public int getWordEnd(int line) {
+        return lineWordStarts[line + 1];
+    }
+
+    public long getWordTime(int word) {
+        return wordTimes[word];
+    }
+
+    public long getWordEndTime(int word) {
+        return wordEndTimes[word];
+    }
+
+    // Highlight progress of a word that has started, 0..1
+    public float getWordProgress(int word, long timeMs) {
+        return Math.min(1.0f, (timeMs - wordTimes[word]) * wordInverseDurations[word]);
+    }
+
+    public int getWordTextStart(int word) {
+        return wordTextStarts[word];
+    }
+
+    public int getWordTextLength(int word) {
+        return wordTextStarts[word + 1] - wordTextStarts[word];
+    }
+
+    // Shared buffer, must not be modified
+    public char[] getText() {
+        return text;
+    }
+
+    public String getWordText(int word) {
+        return new String(text, wordTextStarts[word], getWordTextLength(word));
+    }
+
+    // Approximate retained heap size: array payloads plus object and array headers
+    public long estimateSizeBytes() {
+        long size = 64; // this object
+        size += 16 + 8L * lineStartTimes.length;
+        size += 16 + 8L * lineEndTimes.length;
+        size += 16 + 4L * lineWordStarts.length;
+        size += 16 + 8L * wordTimes.length;
+        size += 16 + 4L * wordTextStarts.length;
+        size += 16 + 8L * wordEndTimes.length;
+        size += 16 + 4L * wordInverseDurations.length;
+        size += 16 + 2L * text.length;
+        size += 3 * (40 + 8L * ((lineStartTimes.length + 63) / 64)); // BitSets
+        return size;
+    }
+
+    public List<LyricLine> toLyricLines() {
+        List<LyricLine> lines = new ArrayList<>(getLineCount());
+        for (int i = 0; i < getLineCount(); i++) {
+            LyricLine line = new LyricLine(lineStartTimes[i]);
+            line.endTime = lineEndTimes[i];
+            line.vocalType = getVocalType(i);
+            line.isBackground = isBackground(i);
+            line.isWordSynced = isWordSynced(i);
+            for (int w = getFirstWord(i); w < getWordEnd(i); w++) {
+                line.words.add(new LyricWord(wordTimes[w], getWordText(w)));
+            }
+            lines.add(line);
+        }
+        return lines;
+    }
+}
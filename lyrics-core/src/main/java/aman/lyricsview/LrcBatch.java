@@ -0,0 +1,225 @@
+package aman.lyricsview;
+
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// A running LrcParser.parseAll(). Every input is parsed as its own task on the caller's
+// executor and a failing input only fails its own Result. Results are in input order.
+public final class LrcBatch {
+
+    public static final class Result {
+        public final int index;
+        @Nullable
+        public final File file; // null for streams
+        @Nullable
+        public final List<LyricLine> lines;
+        @Nullable
+        public final Exception error;
+        public final long bytes;
+
+        Result(int index, @Nullable File file, @Nullable List<LyricLine> lines, @Nullable Exception error, long bytes) {
+            this.index = index;
+            this.file = file;
+            this.lines = lines;
+            this.error = error;
+            this.bytes = bytes;
+        }
+
+        public boolean isSuccess() {
+            return error == null;
+        }
+
+        public boolean isCancelled() {
+            return error instanceof CancellationException;
+        }
+    }
+
+    // Lyrics files are small; a bigger input is not one and would only exhaust the heap
+    static final int MAX_INPUT_BYTES = 16 * 1024 * 1024;
+
+    private final Result[] results;
+    private final CountDownLatch remaining;
+    private final AtomicInteger pending;
+    private final long startNanos = System.nanoTime();
+    private volatile long endNanos = 0;
+    private final AtomicInteger parsedCount = new AtomicInteger(0);
+    private final AtomicInteger failedCount = new AtomicInteger(0);
+    private final AtomicLong parsedBytes = new AtomicLong(0);
+    private volatile boolean cancelled = false;
+
+    private LrcBatch(int count) {
+        results = new Result[count];
+        remaining = new CountDownLatch(count);
+        pending = new AtomicInteger(count);
+        if (count == 0) endNanos = startNanos;
+    }
+
+    static LrcBatch ofFiles(Collection<File> files, Executor executor) {
+        LrcBatch batch = new LrcBatch(files.size());
+        int index = 0;
+        for (File file : files) {
+            batch.submit(executor, index++, file, null);
+        }
+        return batch;
+    }
+
+    static LrcBatch ofStreams(Collection<? extends InputStream> streams, Executor executor) {
+        LrcBatch batch = new LrcBatch(streams.size());
+        int index = 0;
+        for (InputStream stream : streams) {
+            batch.submit(executor, index++, null, stream);
+        }
+        return batch;
+    }
+
+    // Inputs that haven't started yet finish as cancelled; ones already being parsed complete
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public boolean isDone() {
+        return remaining.getCount() == 0;
+    }
+
+    public List<Result> await() throws InterruptedException {
+        remaining.await();
+        return Arrays.asList(results.clone());
+    }
+
+    // Returns null if the batch didn't finish in time
+    @Nullable
+    public List<Result> await(long timeout, TimeUnit unit) throws InterruptedException {
+        if (!remaining.await(timeout, unit)) return null;
+        return Arrays.asList(results.clone());
+    }
+
+    public int getFileCount() {
+        return results.length;
+    }
+
+    public int getParsedCount() {
+        return parsedCount.get();
+    }
+
+    public int getFailedCount() {
+        return failedCount.get();
+    }
+
+    public long getParsedBytes() {
+        return parsedBytes.get();
+    }
+
+    // Wall time from the start until the last input finished, or until now while running
+    public long getElapsedNanos() {
+        long end = endNanos;
+        return (end != 0 ? end : System.nanoTime()) - startNanos;
+    }
+
+    public double getFilesPerSecond() {
+        return perSecond(parsedCount.get());
+    }
+
+    public double getMegabytesPerSecond() {
+        return perSecond(parsedBytes.get() / (1024.0 * 1024.0));
+    }
+
+    private double perSecond(double amount) {
+        long elapsed = getElapsedNanos();
+        return elapsed > 0 ? amount * 1e9 / elapsed : 0;
+    }
+
+    private void submit(Executor executor, final int index, @Nullable final File file, @Nullable final InputStream stream) {
+        try {
+            executor.execute(() -> run(index, file, stream));
+        } catch (RuntimeException e) {
+            // e.g. a RejectedExecutionException from a pool that was shut down
+            closeQuietly(stream);
+            finish(new Result(index, file, null, e, 0));
+        }
+    }
+
+    private void run(int index, @Nullable File file, @Nullable InputStream stream) {
+        if (cancelled) {
+            closeQuietly(stream);
+            finish(new Result(index, file, null, new CancellationException(), 0));
+            return;
+        }
+        try {
+            ByteBuffer data;
+            if (file != null) {
+                long length = file.length();
+                if (length > MAX_INPUT_BYTES) {
+                    throw new IOException(file + " is " + length + " bytes, over the limit of " + MAX_INPUT_BYTES);
+                }
+                try (InputStream in = new FileInputStream(file)) {
+                    data = readFully(in, (int) length + 1);
+                }
+            } else {
+                try (InputStream in = stream) {
+                    data = readFully(in, 8192);
+                }
+            }
+            List<LyricLine> lines = LrcParser.parseOrThrow(data, null);
+            finish(new Result(index, file, lines, null, data.remaining()));
+        } catch (Exception e) {
+            finish(new Result(index, file, null, e, 0));
+        } catch (Error e) {
+            // Not rethrown: every input has to count down, or await() never returns
+            finish(new Result(index, file, null, new ExecutionException(e), 0));
+        }
+    }
+
+    private void finish(Result result) {
+        results[result.index] = result;
+        if (result.isSuccess()) {
+            parsedCount.incrementAndGet();
+            parsedBytes.addAndGet(result.bytes);
+        } else {
+            failedCount.incrementAndGet();
+        }
+        if (pending.decrementAndGet() == 0) endNanos = System.nanoTime();
+        // The latch publishes the result to await()
+        remaining.countDown();
+    }
+
+    // Unlike LrcParser.parse(InputStream), a failed read fails the input instead of
+    // parsing what arrived
+    private static ByteBuffer readFully(InputStream in, int sizeHint) throws IOException {
+        byte[] data = new byte[Math.max(sizeHint, 16)];
+        int size = 0;
+        int read;
+        while ((read = in.read(data, size, data.length - size)) != -1) {
+            size += read;
+            if (size > MAX_INPUT_BYTES) throw new IOException("Input over the limit of " + MAX_INPUT_BYTES + " bytes");
+            if (size == data.length) data = Arrays.copyOf(data, Math.min(data.length * 2, MAX_INPUT_BYTES + 1));
+        }
+        return ByteBuffer.wrap(data, 0, size);
+    }
+
+    private static void closeQuietly(@Nullable InputStream stream) {
+        if (stream == null) return;
+        try {
+            stream.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
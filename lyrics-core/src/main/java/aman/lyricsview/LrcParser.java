@@ -0,0 +1,825 @@
+package aman.lyricsview;
+
+import androidx.annotation.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public class LrcParser {
+
+    public interface ParseListener {
+        void onLinesParsed(List<LyricLine> lines);
+        void onParseComplete();
+    }
+
+    private static final Logger LOG = Logger.getLogger(LrcParser.class.getName());
+
+    // Streaming batches start small so the first screen of lyrics shows up quickly
+    private static final int FIRST_BATCH_SIZE = 16;
+    private static final int MAX_BATCH_SIZE = 1024;
+
+    // How much of a stream is looked at before picking its charset
+    private static final int SNIFF_LENGTH = 8192;
+    // Legacy charset guessing decodes this much of the input with each candidate
+    private static final int LEGACY_SAMPLE_LENGTH = 64 * 1024;
+    // In order of preference when two decode equally well
+    private static final String[] LEGACY_CJK_CHARSETS = { "Shift_JIS", "EUC-KR", "GBK" };
+
+    static final Comparator<LyricLine> LINE_ORDER = (a, b) -> {
+        if (a.startTime == -1 && b.startTime != -1) return -1;
+        if (a.startTime != -1 && b.startTime == -1) return 1;
+
+        int timeCompare = Long.compare(a.startTime, b.startTime);
+        if (timeCompare != 0) return timeCompare;
+
+        if (a.isBackground && !b.isBackground) return 1;
+        if (!a.isBackground && b.isBackground) return -1;
+
+        return Integer.compare(a.vocalType, b.vocalType);
+    };
+
+    // Reads the whole stream, then parses the bytes like parse(ByteBuffer)
+    @Nullable
+    public static List<LyricLine> parse(@Nullable InputStream inputStream) {
+        if (inputStream == null) {
+            return new ArrayList<>();
+        }
+
+        byte[] data = new byte[8192];
+        int size = 0;
+        try (InputStream in = inputStream) {
+            int read;
+            while ((read = in.read(data, size, data.length - size)) != -1) {
+                size += read;
+                if (size == data.length) data = Arrays.copyOf(data, data.length * 2);
+            }
+        } catch (Exception e) {
+            // Keep whatever arrived before the failure
+            LOG.log(Level.WARNING, "Reading lyrics failed after " + size + " bytes", e);
+        }
+        return parse(ByteBuffer.wrap(data, 0, size));
+    }
+
+    public static List<LyricLine> parse(@Nullable CharSequence text) {
+        if (text == null) {
+            return new ArrayList<>();
+        }
+        try {
+            return collect(new SourceLines(new CharSource(text.toString()), 0, text.length()));
+        } catch (RuntimeException e) {
+            LOG.log(Level.WARNING, "Parsing lyrics failed", e);
+            return new ArrayList<>();
+        }
+    }
+
+    // Parses the remaining bytes of a heap, direct or mapped buffer without moving its
+    // position. The charset is taken from a BOM or guessed with detectCharset().
+    public static List<LyricLine> parse(@Nullable ByteBuffer buffer) {
+        return parse(buffer, null);
+    }
+
+    public static List<LyricLine> parse(@Nullable ByteBuffer buffer, @Nullable Charset charset) {
+        if (buffer == null) {
+            return new ArrayList<>();
+        }
+        try {
+            return parseOrThrow(buffer, charset);
+        } catch (RuntimeException e) {
+            LOG.log(Level.WARNING, "Parsing lyrics failed", e);
+            return new ArrayList<>();
+        }
+    }
+
+    // Same as parse(ByteBuffer, Charset), but a failure is thrown instead of logged, for
+    // callers that report it per input like LrcBatch
+    static List<LyricLine> parseOrThrow(ByteBuffer buffer, @Nullable Charset charset) {
+        // Direct and mapped buffers are copied out in one bulk get; the scanner then works
+        // on the array and only word texts are ever decoded
+        byte[] data;
+        int from;
+        int to;
+        if (buffer.hasArray()) {
+            data = buffer.array();
+            from = buffer.arrayOffset() + buffer.position();
+            to = buffer.arrayOffset() + buffer.limit();
+        } else {
+            data = new byte[buffer.remaining()];
+            buffer.duplicate().get(data);
+            from = 0;
+            to = data.length;
+        }
+
+        Charset bomCharset = bomCharset(data, from, to);
+        if (charset == null) {
+            charset = bomCharset != null ? bomCharset : detectCharset(data, from, to, false);
+        }
+        if (charset.equals(bomCharset)) {
+            from += bomLength(bomCharset);
+        }
+
+        if (charset.equals(StandardCharsets.UTF_8)) {
+            return collect(new SourceLines(new Utf8Source(data, to), from, to));
+        }
+
+        String text = new String(data, from, to - from, charset);
+        return collect(new SourceLines(new CharSource(text), 0, text.length()));
+    }
+
+    public static List<LyricLine> parse(FileChannel channel) throws IOException {
+        return parse(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+    }
+
+    // Streaming variant: lines are handed to the listener in file order as they are read,
+    // without sorting or end times. Feed the batches to a LyricsAccumulator to get the
+    // same list parse() returns, built up incrementally.
+    public static void parse(@Nullable InputStream inputStream, ParseListener listener) {
+        if (inputStream == null) {
+            listener.onParseComplete();
+            return;
+        }
+
+        BufferedInputStream in = new BufferedInputStream(inputStream, SNIFF_LENGTH);
+        Charset charset = StandardCharsets.UTF_8;
+        try {
+            charset = sniffCharset(in);
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Reading lyrics failed", e);
+        }
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, charset))) {
+            stream(new ReaderLines(reader), listener);
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Closing lyrics stream failed", e);
+        }
+    }
+
+    public static void parse(@Nullable CharSequence text, ParseListener listener) {
+        if (text == null) {
+            listener.onParseComplete();
+            return;
+        }
+        stream(new SourceLines(new CharSource(text.toString()), 0, text.length()), listener);
+    }
+
+    // Parses a whole library, one task per file on the given executor (a thread pool or
+    // ForkJoinPool). Wait for the ordered results with LrcBatch.await().
+    public static LrcBatch parseAll(Collection<File> files, Executor executor) {
+        return LrcBatch.ofFiles(files, executor);
+    }
+
+    // Each stream is read to the end and closed by its task
+    public static LrcBatch parseAllStreams(Collection<? extends InputStream> streams, Executor executor) {
+        return LrcBatch.ofStreams(streams, executor);
+    }
+
+    // BOM first, then UTF-16 by its zero bytes, then strict UTF-8 validation. Anything
+    // else is guessed between GBK, Shift-JIS, EUC-KR and Windows-1252.
+    public static Charset detectCharset(ByteBuffer buffer) {
+        if (!buffer.hasArray()) {
+            byte[] data = new byte[buffer.remaining()];
+            buffer.duplicate().get(data);
+            buffer = ByteBuffer.wrap(data);
+        }
+        byte[] data = buffer.array();
+        int from = buffer.arrayOffset() + buffer.position();
+        int to = buffer.arrayOffset() + buffer.limit();
+        Charset bomCharset = bomCharset(data, from, to);
+        return bomCharset != null ? bomCharset : detectCharset(data, from, to, false);
+    }
+
+    // Picks the charset from the first few KB of the stream, then skips a BOM so it
+    // doesn't end up glued to the first line
+    private static Charset sniffCharset(BufferedInputStream in) throws IOException {
+        in.mark(SNIFF_LENGTH);
+        byte[] head = new byte[SNIFF_LENGTH];
+        int headLength = 0;
+        int read;
+        while (headLength < head.length && (read = in.read(head, headLength, head.length - headLength)) != -1) {
+            headLength += read;
+        }
+        in.reset();
+
+        Charset charset = bomCharset(head, 0, headLength);
+        if (charset == null) {
+            return detectCharset(head, 0, headLength, headLength == head.length);
+        }
+        for (int i = bomLength(charset); i > 0; i--) in.read();
+        return charset;
+    }
+
+    private static List<LyricLine> collect(SourceLines cursor) {
+        List<LyricLine> lines = new ArrayList<>();
+        boolean isSynced = false;
+
+        LyricLine parsedLine;
+        while ((parsedLine = cursor.next()) != null) {
+            if (parsedLine.startTime != -1) isSynced = true;
+            lines.add(parsedLine);
+        }
+
+        if (isSynced) {
+            Collections.sort(lines, LINE_ORDER);
+            LyricTiming.inferEndTimes(lines);
+        }
+        return lines;
+    }
+
+    private static void stream(LineCursor cursor, ParseListener listener) {
+        int batchSize = FIRST_BATCH_SIZE;
+        List<LyricLine> batch = new ArrayList<>(batchSize);
+
+        try {
+            LyricLine parsedLine;
+            while ((parsedLine = cursor.next()) != null) {
+                batch.add(parsedLine);
+                if (batch.size() >= batchSize) {
+                    listener.onLinesParsed(batch);
+                    batchSize = Math.min(batchSize * 2, MAX_BATCH_SIZE);
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+        } catch (Exception e) {
+            // The lines read so far are still delivered
+            LOG.log(Level.WARNING, "Parsing lyrics failed", e);
+        }
+
+        if (!batch.isEmpty()) listener.onLinesParsed(batch);
+        listener.onParseComplete();
+    }
+
+    @Nullable
+    private static Charset bomCharset(byte[] data, int from, int to) {
+        if (to - from < 2) return null;
+        int b0 = data[from] & 0xFF;
+        int b1 = data[from + 1] & 0xFF;
+        if (b0 == 0xEF && b1 == 0xBB && to - from >= 3 && (data[from + 2] & 0xFF) == 0xBF) {
+            return StandardCharsets.UTF_8;
+        }
+        if (b0 == 0xFF && b1 == 0xFE) return StandardCharsets.UTF_16LE;
+        if (b0 == 0xFE && b1 == 0xFF) return StandardCharsets.UTF_16BE;
+        return null;
+    }
+
+    private static int bomLength(Charset bomCharset) {
+        return bomCharset.equals(StandardCharsets.UTF_8) ? 3 : 2;
+    }
+
+    // truncated: the range is only the head of the input, so a multi-byte sequence may
+    // be cut off at the end
+    private static Charset detectCharset(byte[] data, int from, int to, boolean truncated) {
+        // LRC tags are ASCII, so UTF-16 text has a zero in almost every other byte
+        int pairs = Math.min(to - from, SNIFF_LENGTH) / 2;
+        int evenZeros = 0;
+        int oddZeros = 0;
+        for (int i = 0; i < pairs; i++) {
+            if (data[from + 2 * i] == 0) evenZeros++;
+            if (data[from + 2 * i + 1] == 0) oddZeros++;
+        }
+        if (oddZeros > pairs / 8 && evenZeros <= oddZeros / 8) return StandardCharsets.UTF_16LE;
+        if (evenZeros > pairs / 8 && oddZeros <= evenZeros / 8) return StandardCharsets.UTF_16BE;
+
+        if (isValidUtf8(data, from, to, truncated)) return StandardCharsets.UTF_8;
+        return detectLegacyCharset(data, from, Math.min(to, from + LEGACY_SAMPLE_LENGTH));
+    }
+
+    // Rejects overlong forms, surrogates and code points above U+10FFFF like the decoder does
+    private static boolean isValidUtf8(byte[] data, int from, int to, boolean truncated) {
+        int i = from;
+        while (i < to) {
+            int b = data[i] & 0xFF;
+            if (b < 0x80) {
+                i++;
+                continue;
+            }
+
+            int length;
+            int min = 0x80;
+            int max = 0xBF;
+            if (b >= 0xC2 && b <= 0xDF) {
+                length = 2;
+            } else if (b >= 0xE0 && b <= 0xEF) {
+                length = 3;
+                if (b == 0xE0) min = 0xA0;
+                if (b == 0xED) max = 0x9F;
+            } else if (b >= 0xF0 && b <= 0xF4) {
+                length = 4;
+                if (b == 0xF0) min = 0x90;
+                if (b == 0xF4) max = 0x8F;
+            } else {
+                return false;
+            }
+
+            for (int k = 1; k < length; k++) {
+                if (i + k >= to) return truncated;
+                int next = data[i + k] & 0xFF;
+                if (k == 1 ? (next < min || next > max) : (next & 0xC0) != 0x80) return false;
+            }
+            i += length;
+        }
+        return true;
+    }
+
+    // CJK text is read with whichever of Shift-JIS, GBK and EUC-KR decodes it with the fewest
+    // malformed sequences and, among those, the most common characters. Their byte ranges
+    // overlap a lot, so accented Latin text decodes too, but into single ideographs wedged
+    // between ASCII letters; that, or mostly lone high bytes, means Windows-1252.
+    private static Charset detectLegacyCharset(byte[] data, int from, int to) {
+        Charset best = null;
+        String bestText = null;
+        int bestErrors = Integer.MAX_VALUE;
+        int bestCommon = -1;
+        for (String name : LEGACY_CJK_CHARSETS) {
+            Charset charset = lookupCharset(name);
+            if (charset == null) continue;
+            String text = new String(data, from, to - from, charset);
+            int errors = count(text, '\uFFFD', '\uFFFD');
+            int common = commonCharacters(charset, data, from, to);
+            if (errors < bestErrors || (errors == bestErrors && common > bestCommon)) {
+                best = charset;
+                bestText = text;
+                bestErrors = errors;
+                bestCommon = common;
+            }
+        }
+
+        Charset latin = lookupCharset("windows-1252");
+        if (latin == null) latin = StandardCharsets.ISO_8859_1;
+        if (best == null || isMostlyLoneLatin(data, from, to) || !hasCjkRun(bestText)) return latin;
+        return best;
+    }
+
+    // Two byte characters real text in the charset is mostly made of: symbols, kana and
+    // level 1 kanji in Shift-JIS, GB2312 in GBK, symbols and Hangul in EUC-KR
+    private static int commonCharacters(Charset charset, byte[] data, int from, int to) {
+        boolean shiftJis = charset.name().equals("Shift_JIS");
+        int lastCommonLead = charset.name().equals("EUC-KR") ? 0xC8 : 0xF7;
+        int common = 0;
+        int i = from;
+        while (i + 1 < to) {
+            int lead = data[i] & 0xFF;
+            if (lead < 0x80 || (shiftJis && lead >= 0xA1 && lead <= 0xDF)) {
+                i++;
+                continue;
+            }
+            int trail = data[i + 1] & 0xFF;
+            if (shiftJis) {
+                if (lead <= 0x83 || (lead >= 0x88 && lead <= 0x98)) common++;
+            } else if (lead >= 0xA1 && lead <= lastCommonLead && trail >= 0xA1 && trail <= 0xFE) {
+                common++;
+            }
+            i += 2;
+        }
+        return common;
+    }
+
+    // High bytes in the Latin-1 letter range with ASCII on both sides, like most accented letters
+    private static boolean isMostlyLoneLatin(byte[] data, int from, int to) {
+        int high = 0;
+        int lone = 0;
+        for (int i = from; i < to; i++) {
+            int b = data[i] & 0xFF;
+            if (b < 0x80) continue;
+            high++;
+            if (b >= 0xC0 && (i == from || data[i - 1] >= 0) && (i + 1 == to || data[i + 1] >= 0)) lone++;
+        }
+        return lone * 2 > high;
+    }
+
+    // A run of non-ASCII characters that stands on its own: no malformed sequence in it and,
+    // if it is a single character, no ASCII letter or digit right next to it
+    private static boolean hasCjkRun(String text) {
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            if (text.charAt(i) < 0x80) {
+                i++;
+                continue;
+            }
+            int start = i;
+            boolean malformed = false;
+            while (i < length && text.charAt(i) >= 0x80) {
+                if (text.charAt(i) == '\uFFFD') malformed = true;
+                i++;
+            }
+            if (malformed) continue;
+            if (i - start > 1) return true;
+            boolean wedged = (start > 0 && isAsciiLetterOrDigit(text.charAt(start - 1)))
+                    || (i < length && isAsciiLetterOrDigit(text.charAt(i)));
+            if (!wedged) return true;
+        }
+        return false;
+    }
+
+    private static boolean isAsciiLetterOrDigit(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9');
+    }
+
+    @Nullable
+    private static Charset lookupCharset(String name) {
+        try {
+            return Charset.forName(name);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static int count(String s, char low, char high) {
+        int count = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c >= low && c <= high) count++;
+        }
+        return count;
+    }
+
+    // Single pass scanner over one line of the source. Works on index ranges so the only
+    // allocations are the LyricLine and the word texts.
+    @Nullable
+    private static LyricLine parseLine(Source source, int from, int to) {
+        int start = skipBlank(source, from, to);
+        int end = trimBlankEnd(source, start, to);
+        if (start == end) return null;
+
+        if (isBackgroundTag(source, start, end)) {
+            LyricLine bgLine = new LyricLine(-1);
+            bgLine.isBackground = true;
+            parseTextAndVocals(bgLine, source, start + 4, end - 1);
+
+            if (!bgLine.words.isEmpty() && bgLine.words.get(0).time != -1) {
+                bgLine.startTime = bgLine.words.get(0).time;
+            } else {
+                return null;
+            }
+            return bgLine;
+        }
+
+        // Like the old Matcher.find(), the "[mm:ss.xx]" tag may appear anywhere in the line
+        int tagStart = -1;
+        int tagLength = 0;
+        for (int i = source.indexOf('[', from, to); i != -1; i = source.indexOf('[', i + 1, to)) {
+            tagLength = timeTagLength(source, i, to, ']');
+            if (tagLength > 0) {
+                tagStart = i;
+                break;
+            }
+        }
+
+        if (tagStart != -1) {
+            long startTime = timeTagValue(source, tagStart, tagLength);
+            int textStart = tagStart + tagLength;
+            int textEnd = textEnd(source, textStart, to);
+
+            LyricLine lyricLine = new LyricLine(startTime);
+
+            int trimmedStart = skipBlank(source, textStart, textEnd);
+            int trimmedEnd = trimBlankEnd(source, trimmedStart, textEnd);
+            if (isBackgroundTag(source, trimmedStart, trimmedEnd)) {
+                 lyricLine.isBackground = true;
+                 textStart = trimmedStart + 4;
+                 textEnd = trimmedEnd - 1;
+            }
+
+            parseTextAndVocals(lyricLine, source, textStart, textEnd);
+            return lyricLine;
+
+        } else {
+            LyricLine lyricLine = new LyricLine(-1);
+            lyricLine.isWordSynced = false;
+            splitWords(lyricLine, source, from, to, -1);
+            if (lyricLine.words.isEmpty()) lyricLine.words.add(new LyricWord(-1, source.text(from, to)));
+            return lyricLine;
+        }
+    }
+
+    private static void parseTextAndVocals(LyricLine lyricLine, Source source, int from, int to) {
+        Source content = source;
+        int contentStart = from;
+        int contentEnd = to;
+        // Whitespace left in front of a stripped "v1:"/"v2:" prefix
+        int prefixEnd = from;
+
+        int trimmedStart = skipBlank(source, from, to);
+        int trimmedEnd = trimBlankEnd(source, trimmedStart, to);
+        if (trimmedEnd - trimmedStart >= 3 && source.startsWith("v2:", trimmedStart)) {
+            lyricLine.vocalType = 2;
+            prefixEnd = trimmedStart;
+            contentStart = trimmedStart + 3;
+        } else if (trimmedEnd - trimmedStart >= 3 && source.startsWith("v1:", trimmedStart)) {
+            lyricLine.vocalType = 1;
+            prefixEnd = trimmedStart;
+            contentStart = trimmedStart + 3;
+        } else {
+            if (!lyricLine.isBackground) {
+                lyricLine.vocalType = 1;
+                // Drop everything up to the last ':' that comes before the first '<'
+                int limit = source.indexOf('<', from, to);
+                if (limit == -1) limit = to;
+                for (int i = limit - 1; i >= from; i--) {
+                    if (source.charAt(i) == ':') {
+                        contentStart = i + 1;
+                        break;
+                    }
+                }
+            }
+        }
+
+        // Leading tabs etc. before "v1:" would glue onto the first word, so only in
+        // that rare case the remaining content is stitched into a new String.
+        if (prefixEnd > from) {
+            for (int i = from; i < prefixEnd; i++) {
+                if (source.charAt(i) != ' ') {
+                    String stitched = source.text(from, prefixEnd) + source.text(contentStart, contentEnd);
+                    content = new CharSource(stitched);
+                    contentStart = 0;
+                    contentEnd = stitched.length();
+                    prefixEnd = from = 0;
+                    break;
+                }
+            }
+        }
+
+        boolean hasWordTimestamps = false;
+        int pos = contentStart;
+        while (pos < contentEnd) {
+            int open = content.indexOf('<', pos, contentEnd);
+            if (open == -1) break;
+            int tagLength = timeTagLength(content, open, contentEnd, '>');
+            if (tagLength == 0) {
+                pos = open + 1;
+                continue;
+            }
+            hasWordTimestamps = true;
+            long wordTime = timeTagValue(content, open, tagLength);
+
+            int textStart = open + tagLength;
+            int textEnd = content.indexOf('<', textStart, contentEnd);
+            if (textEnd == -1) textEnd = contentEnd;
+            lyricLine.words.add(new LyricWord(wordTime, content.text(textStart, textEnd)));
+            pos = textEnd;
+        }
+
+        if (hasWordTimestamps) {
+            lyricLine.isWordSynced = true;
+        } else {
+            lyricLine.isWordSynced = false;
+            splitWords(lyricLine, content, contentStart, contentEnd, lyricLine.startTime);
+            int prefixLength = prefixEnd - from;
+            if (lyricLine.words.isEmpty() && prefixLength + contentEnd - contentStart > 0) {
+                 lyricLine.words.add(new LyricWord(lyricLine.startTime,
+                         content.text(from, prefixEnd) + content.text(contentStart, contentEnd)));
+            }
+        }
+
+        if (!lyricLine.words.isEmpty()) {
+            LyricWord lastEntry = lyricLine.words.get(lyricLine.words.size() - 1);
+            if (lyricLine.isWordSynced && (lastEntry.text == null || isBlank(lastEntry.text))) {
+                lyricLine.endTime = lastEntry.time;
+                lyricLine.words.remove(lyricLine.words.size() - 1);
+            }
+        }
+    }
+
+    // Equivalent of String.split(" ") with empty pieces dropped and a space appended to each word
+    private static void splitWords(LyricLine lyricLine, Source source, int from, int to, long time) {
+        int i = from;
+        while (i < to) {
+            if (source.charAt(i) == ' ') {
+                i++;
+                continue;
+            }
+            int wordStart = i;
+            while (i < to && source.charAt(i) != ' ') i++;
+            String text = (i < to)
+                    ? source.text(wordStart, i + 1) // reuse the separator as the trailing space
+                    : source.text(wordStart, i) + " ";
+            lyricLine.words.add(new LyricWord(time, text));
+        }
+    }
+
+    // Length of a "[mm:ss.xx]" / "<mm:ss.xxx>" tag opening at pos, or 0 if there is none
+    private static int timeTagLength(Source s, int pos, int limit, char close) {
+        if (pos + 10 > limit) return 0;
+        if (!isDigit(s.charAt(pos + 1)) || !isDigit(s.charAt(pos + 2)) || s.charAt(pos + 3) != ':'
+                || !isDigit(s.charAt(pos + 4)) || !isDigit(s.charAt(pos + 5)) || s.charAt(pos + 6) != '.'
+                || !isDigit(s.charAt(pos + 7)) || !isDigit(s.charAt(pos + 8))) {
+            return 0;
+        }
+        char c = s.charAt(pos + 9);
+        if (c == close) return 10;
+        if (isDigit(c) && pos + 11 <= limit && s.charAt(pos + 10) == close) return 11;
+        return 0;
+    }
+
+    private static long timeTagValue(Source s, int pos, int tagLength) {
+        int min = digit(s, pos + 1) * 10 + digit(s, pos + 2);
+        int sec = digit(s, pos + 4) * 10 + digit(s, pos + 5);
+        int ms = digit(s, pos + 7) * 100 + digit(s, pos + 8) * 10;
+        if (tagLength == 11) ms += digit(s, pos + 9);
+        return (min * 60L + sec) * 1000L + ms;
+    }
+
+    private static boolean isBackgroundTag(Source s, int start, int end) {
+        return end - start >= 5 && s.startsWith("[bg:", start) && s.charAt(end - 1) == ']';
+    }
+
+    // The old "(.*)" group stopped at the first line terminator
+    private static int textEnd(Source s, int from, int to) {
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            if (c == '\n' || c == '\r' || (c >= 0x80 && s.isUnicodeLineBreak(i))) return i;
+        }
+        return to;
+    }
+
+    // Same whitespace rule as String.trim()
+    private static int skipBlank(Source s, int from, int to) {
+        while (from < to && s.charAt(from) <= ' ') from++;
+        return from;
+    }
+
+    private static int trimBlankEnd(Source s, int from, int to) {
+        while (to > from && s.charAt(to - 1) <= ' ') to--;
+        return to;
+    }
+
+    private static boolean isBlank(String s) {
+        int i = 0;
+        while (i < s.length() && s.charAt(i) <= ' ') i++;
+        return i == s.length();
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static int digit(Source s, int index) {
+        return s.charAt(index) - '0';
+    }
+
+    // What the scanner reads from. Everything it matches on (tags, digits, whitespace,
+    // separators) is ASCII, so UTF-8 can be scanned byte by byte: the bytes of a
+    // multi-byte sequence are all >= 0x80 and never match. Only word texts get decoded.
+    private abstract static class Source {
+        abstract char charAt(int index);
+
+        abstract String text(int from, int to);
+
+        // NEL, LINE SEPARATOR or PARAGRAPH SEPARATOR starting at index
+        abstract boolean isUnicodeLineBreak(int index);
+
+        int indexOf(char c, int from, int to) {
+            for (int i = from; i < to; i++) {
+                if (charAt(i) == c) return i;
+            }
+            return -1;
+        }
+
+        boolean startsWith(String prefix, int at) {
+            for (int i = 0; i < prefix.length(); i++) {
+                if (charAt(at + i) != prefix.charAt(i)) return false;
+            }
+            return true;
+        }
+
+        // End of the line starting at from: the first '\n' or '\r', like readLine()
+        int lineEnd(int from, int to) {
+            for (int i = from; i < to; i++) {
+                char c = charAt(i);
+                if (c == '\n' || c == '\r') return i;
+            }
+            return to;
+        }
+    }
+
+    private static final class CharSource extends Source {
+        private final String text;
+
+        CharSource(String text) {
+            this.text = text;
+        }
+
+        @Override
+        char charAt(int index) {
+            return text.charAt(index);
+        }
+
+        @Override
+        String text(int from, int to) {
+            return text.substring(from, to);
+        }
+
+        @Override
+        boolean isUnicodeLineBreak(int index) {
+            char c = text.charAt(index);
+            return c == '\u0085' || c == '\u2028' || c == '\u2029';
+        }
+
+        @Override
+        int indexOf(char c, int from, int to) {
+            int index = text.indexOf(c, from);
+            return (index == -1 || index >= to) ? -1 : index;
+        }
+    }
+
+    private static final class Utf8Source extends Source {
+        private final byte[] data;
+        private final int limit;
+
+        Utf8Source(byte[] data, int limit) {
+            this.data = data;
+            this.limit = limit;
+        }
+
+        @Override
+        char charAt(int index) {
+            return (char) (data[index] & 0xFF);
+        }
+
+        @Override
+        String text(int from, int to) {
+            return new String(data, from, to - from, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        boolean isUnicodeLineBreak(int index) {
+            int b = data[index] & 0xFF;
+            if (b == 0xC2) {
+                return index + 1 < limit && (data[index + 1] & 0xFF) == 0x85;
+            }
+            if (b == 0xE2 && index + 2 < limit && (data[index + 1] & 0xFF) == 0x80) {
+                int last = data[index + 2] & 0xFF;
+                return last == 0xA8 || last == 0xA9;
+            }
+            return false;
+        }
+    }
+
+    // Hands out the parsed lines of an input one at a time, null at the end
+    private abstract static class LineCursor {
+        @Nullable
+        abstract LyricLine next() throws IOException;
+    }
+
+    private static final class SourceLines extends LineCursor {
+        private final Source source;
+        private final int end;
+        private int pos;
+
+        SourceLines(Source source, int from, int to) {
+            this.source = source;
+            this.pos = from;
+            this.end = to;
+        }
+
+        @Override
+        @Nullable
+        LyricLine next() {
+            while (pos < end) {
+                int lineStart = pos;
+                int lineEnd = source.lineEnd(pos, end);
+                pos = lineEnd + 1;
+                if (pos < end && source.charAt(lineEnd) == '\r' && source.charAt(pos) == '\n') pos++;
+
+                LyricLine parsedLine = parseLine(source, lineStart, lineEnd);
+                if (parsedLine != null) return parsedLine;
+            }
+            return null;
+        }
+    }
+
+    private static final class ReaderLines extends LineCursor {
+        private final BufferedReader reader;
+
+        ReaderLines(BufferedReader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        @Nullable
+        LyricLine next() throws IOException {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                LyricLine parsedLine = parseLine(new CharSource(line), 0, line.length());
+                if (parsedLine != null) return parsedLine;
+            }
+            return null;
+        }
+    }
+}
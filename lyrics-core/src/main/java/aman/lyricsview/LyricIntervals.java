@@ -0,0 +1,143 @@
+package aman.lyricsview;
+
+import java.util.Arrays;
+
+// Centered interval tree over the [start, end] range of every synced line, flattened into
+// arrays. Each node holds the lines that contain its center time, once ordered by start
+// and once by end, so a query only walks one root-to-leaf path: O(log n + k).
+final class LyricIntervals {
+
+    private final long[] starts;
+    private final long[] ends;
+
+    private final long[] nodeCenter;
+    private final int[] nodeLeft;
+    private final int[] nodeRight;
+    private final int[] nodeFrom;
+    private final int[] nodeSize;
+    private int nodeCount;
+    private final int root;
+
+    // Lines of node n are [nodeFrom[n], nodeFrom[n] + nodeSize[n]) in both arrays
+    private final int[] byStart;
+    private final int[] byEnd;
+
+    LyricIntervals(CompiledLyrics lyrics) {
+        int lineCount = lyrics.getLineCount();
+        starts = new long[lineCount];
+        ends = new long[lineCount];
+        int[] synced = new int[lineCount];
+        int syncedCount = 0;
+        for (int i = 0; i < lineCount; i++) {
+            starts[i] = lyrics.getLineStartTime(i);
+            ends[i] = lyrics.getLineEndTime(i);
+            if (starts[i] != -1 && ends[i] >= starts[i]) synced[syncedCount++] = i;
+        }
+
+        int[] startOrder = Arrays.copyOf(synced, syncedCount);
+        sort(startOrder, starts, false);
+        int[] endOrder = Arrays.copyOf(synced, syncedCount);
+        sort(endOrder, ends, true);
+
+        nodeCenter = new long[syncedCount];
+        nodeLeft = new int[syncedCount];
+        nodeRight = new int[syncedCount];
+        nodeFrom = new int[syncedCount];
+        nodeSize = new int[syncedCount];
+        int[] nodeOfLine = new int[lineCount];
+        root = build(startOrder, syncedCount, nodeOfLine);
+
+        for (int n = 1; n < nodeCount; n++) nodeFrom[n] = nodeFrom[n - 1] + nodeSize[n - 1];
+        byStart = fill(startOrder, nodeOfLine);
+        byEnd = fill(endOrder, nodeOfLine);
+    }
+
+    // Lines with start <= timeMs <= end. Writes up to out.length of them, in index order
+    // if they all fit, and returns how many there are in total.
+    int query(long timeMs, int[] out) {
+        int count = 0;
+        int node = root;
+        while (node != -1) {
+            int from = nodeFrom[node];
+            int to = from + nodeSize[node];
+            long center = nodeCenter[node];
+            if (timeMs < center) {
+                // Every line here ends after timeMs, so it only has to have started
+                for (int k = from; k < to && starts[byStart[k]] <= timeMs; k++) {
+                    if (count < out.length) out[count] = byStart[k];
+                    count++;
+                }
+                node = nodeLeft[node];
+            } else if (timeMs > center) {
+                for (int k = from; k < to && ends[byEnd[k]] >= timeMs; k++) {
+                    if (count < out.length) out[count] = byEnd[k];
+                    count++;
+                }
+                node = nodeRight[node];
+            } else {
+                for (int k = from; k < to; k++) {
+                    if (count < out.length) out[count] = byStart[k];
+                    count++;
+                }
+                break;
+            }
+        }
+        if (count <= out.length) Arrays.sort(out, 0, count);
+        return count;
+    }
+
+    // lines is ordered by start. The center is the median start, so each side gets at
+    // most half of the lines and the tree stays O(log n) deep.
+    private int build(int[] lines, int count, int[] nodeOfLine) {
+        if (count == 0) return -1;
+        int node = nodeCount++;
+        long center = starts[lines[count >>> 1]];
+        nodeCenter[node] = center;
+
+        int[] below = new int[count];
+        int[] above = new int[count];
+        int belowCount = 0, aboveCount = 0;
+        for (int k = 0; k < count; k++) {
+            int line = lines[k];
+            if (ends[line] < center) {
+                below[belowCount++] = line;
+            } else if (starts[line] > center) {
+                above[aboveCount++] = line;
+            } else {
+                nodeOfLine[line] = node;
+                nodeSize[node]++;
+            }
+        }
+        nodeLeft[node] = build(below, belowCount, nodeOfLine);
+        nodeRight[node] = build(above, aboveCount, nodeOfLine);
+        return node;
+    }
+
+    // Groups the lines by node, keeping the given order within each node
+    private int[] fill(int[] order, int[] nodeOfLine) {
+        int[] result = new int[order.length];
+        int[] next = Arrays.copyOf(nodeFrom, nodeCount);
+        for (int line : order) result[next[nodeOfLine[line]]++] = line;
+        return result;
+    }
+
+    // Stable merge sort of line indices by key
+    private static void sort(int[] lines, long[] key, boolean descending) {
+        int[] buffer = new int[lines.length];
+        for (int width = 1; width < lines.length; width *= 2) {
+            for (int low = 0; low < lines.length - width; low += 2 * width) {
+                int mid = low + width;
+                int high = Math.min(low + 2 * width, lines.length);
+                int a = low, b = mid, out = low;
+                while (a < mid && b < high) {
+                    long ka = key[lines[a]], kb = key[lines[b]];
+                    boolean takeB = descending ? kb > ka : kb < ka;
+                    buffer[out++] = takeB ? lines[b++] : lines[a++];
+                }
+                while (a < mid) buffer[out++] = lines[a++];
+                while (b < high) buffer[out++] = lines[b++];
+                System.arraycopy(buffer, low, lines, low, high - low);
+            }
+        }
+    }
+}
@@ -12,6 +12,8 @@ public class LyricLine {
     public boolean isWordSynced = false; 
     public boolean isBackground = false; // NEW: Flag for Background Vocals
 
+    boolean endTimeInferred = false; // endTime was filled in from the next line, not the file
+
     public LyricLine(long startTime) {
         this.startTime = startTime;
     }
@@ -0,0 +1,96 @@
+package aman.lyricsview;
+
+// Time lookups over the lines of a CompiledLyrics. A line is "reached" once the playback
+// time passes its start and every line before it was reached too, which is exactly how
+// the view picks its current line, also for lists that were not sorted by the parser.
+// Queries are binary searches; a Cursor follows steadily advancing playback in O(1).
+// Overlapping lines (duets, background vocals) are found through an interval tree.
+public final class LyricTimeline {
+
+    private final CompiledLyrics lyrics;
+    // Running maximum of the start times, non-decreasing, so it can be binary searched
+    private final long[] reachedAt;
+    private final LyricIntervals intervals;
+
+    public LyricTimeline(CompiledLyrics lyrics) {
+        this.lyrics = lyrics;
+        int lineCount = lyrics.getLineCount();
+        reachedAt = new long[lineCount];
+        long max = Long.MIN_VALUE;
+        for (int i = 0; i < lineCount; i++) {
+            max = Math.max(max, lyrics.getLineStartTime(i));
+            reachedAt[i] = max;
+        }
+        intervals = new LyricIntervals(lyrics);
+    }
+
+    public CompiledLyrics getLyrics() {
+        return lyrics;
+    }
+
+    // Last reached line at timeMs, or -1 if none has been reached yet
+    public int lineAt(long timeMs) {
+        return firstUnreached(timeMs, 0, reachedAt.length) - 1;
+    }
+
+    // The line that will be reached next after timeMs, or -1 if all lines are reached
+    public int nextLine(long timeMs) {
+        int next = firstUnreached(timeMs, 0, reachedAt.length);
+        return next < reachedAt.length ? next : -1;
+    }
+
+    // Synced lines with start <= timeMs <= end. Writes up to out.length of them, in index
+    // order if they all fit, and returns how many there are in total. O(log n + k).
+    public int activeLines(long timeMs, int[] out) {
+        return intervals.query(timeMs, out);
+    }
+
+    public Cursor newCursor() {
+        return new Cursor();
+    }
+
+    private int firstUnreached(long timeMs, int low, int high) {
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (reachedAt[mid] <= timeMs) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    // Remembers the last answer. Moving forward by a few lines is a couple of comparisons,
+    // seeks fall back to a binary search. Not thread safe; use one cursor per thread.
+    public final class Cursor {
+        private static final int MAX_STEPS = 4;
+
+        private int line = -1;
+        private long time = Long.MIN_VALUE;
+
+        // Same as lineAt(timeMs)
+        public int moveTo(long timeMs) {
+            if (timeMs >= time) {
+                int steps = 0;
+                while (line + 1 < reachedAt.length && reachedAt[line + 1] <= timeMs) {
+                    if (++steps > MAX_STEPS) {
+                        line = firstUnreached(timeMs, line + 1, reachedAt.length) - 1;
+                        break;
+                    }
+                    line++;
+                }
+            } else {
+                line = lineAt(timeMs);
+            }
+            time = timeMs;
+            return line;
+        }
+
+        public int getLine() {
+            return line;
+        }
+
+        // Line after the current one, or -1 at the end
+        public int getNextLine() {
+            return line + 1 < reachedAt.length ? line + 1 : -1;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package aman.lyricsview;
+
+import java.util.List;
+
+// Timing rules shared by the parser and the view: inferred end times, how lines fade in
+// and out around their time range, and where overlapping lines scroll to.
+public final class LyricTiming {
+
+    // Lines without an explicit end last until the next start, or this long if they are last
+    public static final long DEFAULT_LINE_DURATION_MS = 3000;
+    // How early a line starts to scroll and fade in before it is sung
+    public static final long SCROLL_ANTICIPATION_MS = 600;
+    // How long a line keeps fading out after it ends
+    public static final long DECAY_DURATION_MS = 400;
+
+    private LyricTiming() {
+    }
+
+    // lines must already be in LrcParser order
+    public static void inferEndTimes(List<LyricLine> lines) {
+        for (int i = 0; i < lines.size(); i++) {
+            LyricLine curr = lines.get(i);
+            if (curr.startTime == -1) continue;
+
+            if (curr.endTime == 0) {
+                long nextDifferentStart = -1;
+                for (int j = i + 1; j < lines.size(); j++) {
+                    LyricLine next = lines.get(j);
+                    if (next.startTime > curr.startTime) {
+                        nextDifferentStart = next.startTime;
+                        break;
+                    }
+                }
+
+                if (nextDifferentStart != -1) {
+                    curr.endTime = nextDifferentStart;
+                } else {
+                    curr.endTime = curr.startTime + DEFAULT_LINE_DURATION_MS;
+                }
+            }
+        }
+    }
+
+    // 1 while the line is sung, ramping up before it and down after it. nextStartTime is
+    // the start of the next distinct line (-1 if none); a past line stays lit until then.
+    public static float focusRatio(long startTime, long endTime, long nextStartTime, long timeMs) {
+        if (startTime == -1) return 1.0f;
+        if (timeMs >= startTime && timeMs <= endTime) return 1.0f;
+        if (timeMs < startTime) {
+            long diff = startTime - timeMs;
+            if (diff <= SCROLL_ANTICIPATION_MS)
+                return 1.0f - ((float) diff / SCROLL_ANTICIPATION_MS);
+            return 0.0f;
+        }
+        if (timeMs > endTime) {
+            float decay = 0.0f, antic = 0.0f;
+            long diff = timeMs - endTime;
+            if (diff < DECAY_DURATION_MS) decay = 1.0f - ((float) diff / DECAY_DURATION_MS);
+            if (nextStartTime != -1) {
+                long diffNext = nextStartTime - timeMs;
+                if (diffNext > SCROLL_ANTICIPATION_MS) antic = 1.0f;
+                else if (diffNext > 0) antic = (float) diffNext / SCROLL_ANTICIPATION_MS;
+            }
+            return Math.max(decay, antic);
+        }
+        return 0.0f;
+    }
+
+    // How far to move from the current line's scroll target towards the next one:
+    // 0 until SCROLL_ANTICIPATION_MS before the next start, then up to 1
+    public static float scrollAnticipation(long nextStartTime, long timeMs) {
+        if (nextStartTime == -1) return 0f;
+        long timeUntilNext = nextStartTime - timeMs;
+        if (timeUntilNext < SCROLL_ANTICIPATION_MS && timeUntilNext > 0) {
+            return 1f - ((float) timeUntilNext / SCROLL_ANTICIPATION_MS);
+        }
+        return 0f;
+    }
+
+    // Scroll position per line from each line's vertical center (NaN = not laid out). A line
+    // that starts while the previous one is still sung scrolls halfway between the two, and
+    // onto the previous one while the line before that is sung as well. Once three or more
+    // earlier lines are still sung, it scrolls to the middle of that whole group instead.
+    public static void scrollTargets(LyricTimeline timeline, float[] lineCenterY, float[] out) {
+        int[] sounding = new int[8];
+        for (int i = 0; i < timeline.getLyrics().getLineCount(); i++) {
+            out[i] = scrollTarget(timeline, lineCenterY, i, sounding);
+        }
+    }
+
+    // Scroll position of a single line, see scrollTargets. sounding is scratch space; a
+    // larger one is allocated if more lines overlap than it can hold.
+    public static float scrollTarget(LyricTimeline timeline, float[] lineCenterY, int line, int[] sounding) {
+        CompiledLyrics lyrics = timeline.getLyrics();
+        float centerCur = Float.isNaN(lineCenterY[line]) ? 0f : lineCenterY[line];
+        long startTime = lyrics.getLineStartTime(line);
+        if (startTime == -1) return centerCur;
+
+        int count = timeline.activeLines(startTime, sounding);
+        if (count > sounding.length) {
+            sounding = new int[Integer.highestOneBit(count) << 1];
+            count = timeline.activeLines(startTime, sounding);
+        }
+        // Earlier lines that are laid out and do not end right as this one starts
+        int group = 0;
+        for (int k = 0; k < count; k++) {
+            int other = sounding[k];
+            if (other < line && startTime < lyrics.getLineEndTime(other) && !Float.isNaN(lineCenterY[other])) {
+                sounding[group++] = other;
+            }
+        }
+
+        if (group >= 3) {
+            // The group is those lines plus this one, the median center is the target
+            int size = group + 1;
+            int middle = size / 2;
+            float centerMid = middle == group ? centerCur : lineCenterY[sounding[middle]];
+            if (size % 2 == 0) {
+                return (lineCenterY[sounding[middle - 1]] + centerMid) / 2f;
+            }
+            return centerMid;
+        }
+
+        float centerPrev = line > 0 ? lineCenterY[line - 1] : Float.NaN;
+        if (line > 1 && startTime < lyrics.getLineEndTime(line - 2)) {
+            return Float.isNaN(centerPrev) ? centerCur : centerPrev;
+        }
+        if (line > 0 && startTime < lyrics.getLineEndTime(line - 1) && !Float.isNaN(centerPrev)) {
+            return (centerPrev + centerCur) / 2f;
+        }
+        return centerCur;
+    }
+}
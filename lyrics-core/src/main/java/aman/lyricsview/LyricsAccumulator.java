@@ -0,0 +1,82 @@
+package aman.lyricsview;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Builds the sorted list LrcParser.parse() returns from streamed batches. Each line is
+// inserted in order and only the end times its arrival affects are fixed up, so adding
+// a batch costs about O(batch * log n) instead of a full sort.
+public class LyricsAccumulator {
+
+    private final List<LyricLine> lines = new ArrayList<>();
+    private int firstChangedLine = 0;
+
+    public List<LyricLine> getLines() {
+        return lines;
+    }
+
+    // Lowest index inserted or given a new end time since the last call; all lines before it
+    // are exactly as they were then
+    public int takeFirstChangedLine() {
+        int first = Math.min(firstChangedLine, lines.size());
+        firstChangedLine = lines.size();
+        return first;
+    }
+
+    public void addAll(List<LyricLine> batch) {
+        for (LyricLine line : batch) {
+            add(line);
+        }
+    }
+
+    public void add(LyricLine line) {
+        int index = upperBound(line);
+        lines.add(index, line);
+        firstChangedLine = Math.min(firstChangedLine, index);
+
+        long start = line.startTime;
+        if (start == -1) return;
+
+        if (line.endTime == 0) {
+            line.endTimeInferred = true;
+            line.endTime = nextDifferentStart(index);
+        }
+
+        // Lines sharing the closest earlier start time now end where this one begins
+        int i = index - 1;
+        while (i >= 0 && lines.get(i).startTime == start) i--;
+        if (i < 0 || lines.get(i).startTime == -1) return;
+
+        long previousStart = lines.get(i).startTime;
+        for (; i >= 0 && lines.get(i).startTime == previousStart; i--) {
+            LyricLine previous = lines.get(i);
+            if (previous.endTimeInferred) {
+                previous.endTime = start;
+                firstChangedLine = Math.min(firstChangedLine, i);
+            }
+        }
+    }
+
+    private long nextDifferentStart(int index) {
+        long start = lines.get(index).startTime;
+        for (int j = index + 1; j < lines.size(); j++) {
+            long nextStart = lines.get(j).startTime;
+            if (nextStart > start) return nextStart;
+        }
+        return start + LyricTiming.DEFAULT_LINE_DURATION_MS;
+    }
+
+    // Insert after equal lines so the result matches the stable sort in LrcParser
+    private int upperBound(LyricLine line) {
+        int size = lines.size();
+        if (size == 0 || LrcParser.LINE_ORDER.compare(lines.get(size - 1), line) <= 0) return size;
+
+        int low = 0, high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (LrcParser.LINE_ORDER.compare(lines.get(mid), line) <= 0) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+}
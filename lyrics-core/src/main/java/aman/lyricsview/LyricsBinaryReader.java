@@ -0,0 +1,145 @@
+package aman.lyricsview;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.StandardCharsets;
+import java.util.BitSet;
+
+// Loads lyrics written by LyricsBinaryWriter straight into a CompiledLyrics. Decoding is a
+// single pass of varint reads plus one UTF-8 decode of the string table, no text parsing.
+public class LyricsBinaryReader {
+
+    public static CompiledLyrics read(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            return read(channel);
+        }
+    }
+
+    public static CompiledLyrics read(FileChannel channel) throws IOException {
+        return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+    }
+
+    // Reads from the buffer's position; heap, direct and mapped buffers all work
+    public static CompiledLyrics read(ByteBuffer buffer) throws IOException {
+        ByteBuffer in = buffer.slice();
+        try {
+            for (byte b : LyricsBinaryWriter.MAGIC) {
+                if (in.get() != b) throw new IOException("Not a compiled lyrics file");
+            }
+            int version = in.get() & 0xFF;
+            if (version != LyricsBinaryWriter.VERSION) {
+                throw new IOException("Unsupported compiled lyrics version " + version);
+            }
+            in.get(); // Reserved
+
+            int lineCount = readCount(in);
+            int wordCount = readCount(in);
+            int stringCount = readCount(in);
+            int charCount = readCount(in);
+            int byteCount = readCount(in);
+            // Every entry takes at least one byte, so this catches garbage before allocating
+            int remaining = in.remaining();
+            if (lineCount > remaining || wordCount > remaining || stringCount > remaining
+                    || byteCount > remaining || charCount > byteCount) {
+                throw new IOException("Corrupt compiled lyrics header");
+            }
+
+            int[] stringStarts = new int[stringCount + 1];
+            for (int s = 0; s < stringCount; s++) {
+                stringStarts[s + 1] = stringStarts[s] + readCount(in);
+            }
+            if (stringStarts[stringCount] != charCount) throw new IOException("Corrupt string table");
+
+            ByteBuffer tableBytes = in.slice();
+            tableBytes.limit(byteCount);
+            CharBuffer table = StandardCharsets.UTF_8.newDecoder().decode(tableBytes);
+            if (table.remaining() != charCount) throw new IOException("Corrupt string table");
+            char[] pool = new char[charCount];
+            table.get(pool);
+            in.position(in.position() + byteCount);
+
+            long[] lineStartTimes = new long[lineCount];
+            long[] lineEndTimes = new long[lineCount];
+            int[] lineWordStarts = new int[lineCount + 1];
+            long[] wordTimes = new long[wordCount];
+            int[] wordStrings = new int[wordCount];
+            int[] wordTextStarts = new int[wordCount + 1];
+            BitSet backgroundLines = new BitSet(lineCount);
+            BitSet secondaryVocalLines = new BitSet(lineCount);
+            BitSet wordSyncedLines = new BitSet(lineCount);
+
+            int word = 0;
+            int textLength = 0;
+            long previousStart = 0;
+            for (int i = 0; i < lineCount; i++) {
+                int flags = in.get() & 0xFF;
+                if ((flags & LyricsBinaryWriter.FLAG_BACKGROUND) != 0) backgroundLines.set(i);
+                if ((flags & LyricsBinaryWriter.FLAG_SECONDARY_VOCAL) != 0) secondaryVocalLines.set(i);
+                if ((flags & LyricsBinaryWriter.FLAG_WORD_SYNCED) != 0) wordSyncedLines.set(i);
+
+                long start = previousStart + readSignedVarint(in);
+                lineStartTimes[i] = start;
+                lineEndTimes[i] = start + readSignedVarint(in);
+                previousStart = start;
+
+                int lineWords = readCount(in);
+                if (word + lineWords > wordCount) throw new IOException("Corrupt word count");
+                lineWordStarts[i] = word;
+
+                long previousTime = start;
+                for (int w = 0; w < lineWords; w++, word++) {
+                    previousTime += readSignedVarint(in);
+                    wordTimes[word] = previousTime;
+                    int string = readCount(in);
+                    if (string >= stringCount) throw new IOException("Corrupt string index");
+                    wordStrings[word] = string;
+                    wordTextStarts[word] = textLength;
+                    textLength += stringStarts[string + 1] - stringStarts[string];
+                }
+            }
+            if (word != wordCount) throw new IOException("Corrupt word count");
+            lineWordStarts[lineCount] = wordCount;
+            wordTextStarts[wordCount] = textLength;
+
+            char[] text = new char[textLength];
+            for (int w = 0; w < wordCount; w++) {
+                int string = wordStrings[w];
+                System.arraycopy(pool, stringStarts[string], text, wordTextStarts[w],
+                        stringStarts[string + 1] - stringStarts[string]);
+            }
+
+            return new CompiledLyrics(lineStartTimes, lineEndTimes, lineWordStarts, wordTimes,
+                    wordTextStarts, text, backgroundLines, secondaryVocalLines, wordSyncedLines);
+        } catch (BufferUnderflowException | IllegalArgumentException | CharacterCodingException e) {
+            throw new IOException("Truncated or corrupt compiled lyrics", e);
+        }
+    }
+
+    private static int readCount(ByteBuffer in) throws IOException {
+        long value = readVarint(in);
+        if (value > Integer.MAX_VALUE) throw new IOException("Corrupt count " + value);
+        return (int) value;
+    }
+
+    private static long readSignedVarint(ByteBuffer in) throws IOException {
+        long value = readVarint(in);
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static long readVarint(ByteBuffer in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+        throw new IOException("Malformed varint");
+    }
+}
@@ -0,0 +1,144 @@
+package aman.lyricsview;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Serializes parsed lyrics into the compact binary format read by LyricsBinaryReader.
+//
+// Layout (all integers are unsigned LEB128 varints unless noted, "zigzag" = signed varint):
+//   "LRCB", u8 version, u8 reserved
+//   lineCount, wordCount, stringCount, string table char count, string table byte count
+//   string table: char length of every string, then all strings as one UTF-8 blob
+//   per line: u8 flags, zigzag start delta from previous line, zigzag (end - start), word count
+//     per word: zigzag time delta from previous word (line start for the first), string index
+public class LyricsBinaryWriter {
+
+    static final byte[] MAGIC = { 'L', 'R', 'C', 'B' };
+    static final int VERSION = 1;
+
+    static final int FLAG_BACKGROUND = 1;
+    static final int FLAG_SECONDARY_VOCAL = 1 << 1;
+    static final int FLAG_WORD_SYNCED = 1 << 2;
+
+    public static void write(List<LyricLine> lines, OutputStream out) throws IOException {
+        write(CompiledLyrics.compile(lines), out);
+    }
+
+    public static void write(CompiledLyrics lyrics, OutputStream out) throws IOException {
+        out.write(toByteArray(lyrics));
+    }
+
+    public static byte[] toByteArray(CompiledLyrics lyrics) {
+        int lineCount = lyrics.getLineCount();
+        int wordCount = lyrics.getWordCount();
+
+        // Repeated words (choruses, "ooh") are stored once
+        Map<String, Integer> stringIndex = new HashMap<>();
+        List<String> strings = new ArrayList<>();
+        int[] wordStrings = new int[wordCount];
+        int charCount = 0;
+        for (int w = 0; w < wordCount; w++) {
+            String text = lyrics.getWordText(w);
+            Integer index = stringIndex.get(text);
+            if (index == null) {
+                index = strings.size();
+                stringIndex.put(text, index);
+                strings.add(text);
+                charCount += text.length();
+            }
+            wordStrings[w] = index;
+        }
+
+        StringBuilder table = new StringBuilder(charCount);
+        for (String s : strings) table.append(s);
+        byte[] tableBytes = table.toString().getBytes(StandardCharsets.UTF_8);
+
+        Buffer buffer = new Buffer(tableBytes.length + lineCount * 8 + wordCount * 4 + 32);
+        buffer.writeBytes(MAGIC, 0, MAGIC.length);
+        buffer.writeByte(VERSION);
+        buffer.writeByte(0);
+        buffer.writeVarint(lineCount);
+        buffer.writeVarint(wordCount);
+        buffer.writeVarint(strings.size());
+        buffer.writeVarint(charCount);
+        buffer.writeVarint(tableBytes.length);
+        for (String s : strings) buffer.writeVarint(s.length());
+        buffer.writeBytes(tableBytes, 0, tableBytes.length);
+
+        long previousStart = 0;
+        for (int i = 0; i < lineCount; i++) {
+            int flags = 0;
+            if (lyrics.isBackground(i)) flags |= FLAG_BACKGROUND;
+            if (lyrics.getVocalType(i) == 2) flags |= FLAG_SECONDARY_VOCAL;
+            if (lyrics.isWordSynced(i)) flags |= FLAG_WORD_SYNCED;
+            buffer.writeByte(flags);
+
+            long start = lyrics.getLineStartTime(i);
+            buffer.writeSignedVarint(start - previousStart);
+            buffer.writeSignedVarint(lyrics.getLineEndTime(i) - start);
+            previousStart = start;
+
+            int firstWord = lyrics.getFirstWord(i);
+            int wordEnd = lyrics.getWordEnd(i);
+            buffer.writeVarint(wordEnd - firstWord);
+
+            long previousTime = start;
+            for (int w = firstWord; w < wordEnd; w++) {
+                long time = lyrics.getWordTime(w);
+                buffer.writeSignedVarint(time - previousTime);
+                buffer.writeVarint(wordStrings[w]);
+                previousTime = time;
+            }
+        }
+        return buffer.toByteArray();
+    }
+
+    private static class Buffer {
+        private byte[] data;
+        private int size = 0;
+
+        Buffer(int capacity) {
+            data = new byte[Math.max(16, capacity)];
+        }
+
+        void writeByte(int b) {
+            ensureCapacity(1);
+            data[size++] = (byte) b;
+        }
+
+        void writeBytes(byte[] bytes, int offset, int count) {
+            ensureCapacity(count);
+            System.arraycopy(bytes, offset, data, size, count);
+            size += count;
+        }
+
+        void writeVarint(long value) {
+            ensureCapacity(10);
+            while ((value & ~0x7FL) != 0) {
+                data[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            data[size++] = (byte) value;
+        }
+
+        void writeSignedVarint(long value) {
+            writeVarint((value << 1) ^ (value >> 63));
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(data, size);
+        }
+
+        private void ensureCapacity(int extra) {
+            if (size + extra > data.length) {
+                data = Arrays.copyOf(data, Math.max(data.length * 2, size + extra));
+            }
+        }
+    }
+}
@@ -0,0 +1,268 @@
+package aman.lyricsview;
+
+import androidx.annotation.Nullable;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Process-wide LRU of parsed lyrics, keyed by a 64-bit hash of the raw LRC bytes (UTF-8
+// for Strings) and bounded by the estimated size of the cached CompiledLyrics.
+public final class LyricsCache {
+
+    public static final long DEFAULT_MAX_BYTES = 4 * 1024 * 1024;
+
+    private static final LyricsCache INSTANCE = new LyricsCache(DEFAULT_MAX_BYTES);
+
+    private final LinkedHashMap<Long, CompiledLyrics> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long maxBytes;
+    private long sizeBytes = 0;
+    private long hitCount = 0;
+    private long missCount = 0;
+    private long evictionCount = 0;
+
+    LyricsCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    public static LyricsCache getInstance() {
+        return INSTANCE;
+    }
+
+    public CompiledLyrics getOrParse(String lrc) {
+        long key = hash(lrc);
+        CompiledLyrics cached = get(key);
+        if (cached != null) return cached;
+
+        CompiledLyrics parsed = CompiledLyrics.compile(LrcParser.parse(lrc));
+        put(key, parsed);
+        return parsed;
+    }
+
+    public CompiledLyrics getOrParse(byte[] lrc) {
+        long key = hash(lrc);
+        CompiledLyrics cached = get(key);
+        if (cached != null) return cached;
+
+        CompiledLyrics parsed = CompiledLyrics.compile(LrcParser.parse(ByteBuffer.wrap(lrc)));
+        put(key, parsed);
+        return parsed;
+    }
+
+    @Nullable
+    public synchronized CompiledLyrics get(long key) {
+        CompiledLyrics lyrics = entries.get(key);
+        if (lyrics != null) hitCount++;
+        else missCount++;
+        return lyrics;
+    }
+
+    public synchronized void put(long key, CompiledLyrics lyrics) {
+        long size = lyrics.estimateSizeBytes();
+        if (size > maxBytes) return;
+
+        CompiledLyrics previous = entries.put(key, lyrics);
+        if (previous != null) sizeBytes -= previous.estimateSizeBytes();
+        sizeBytes += size;
+        trimToSize(maxBytes);
+    }
+
+    public synchronized void setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+        trimToSize(maxBytes);
+    }
+
+    public synchronized long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public synchronized long getSizeBytes() {
+        return sizeBytes;
+    }
+
+    public synchronized int getEntryCount() {
+        return entries.size();
+    }
+
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        sizeBytes = 0;
+    }
+
+    private void trimToSize(long limit) {
+        Iterator<Map.Entry<Long, CompiledLyrics>> it = entries.entrySet().iterator();
+        while (sizeBytes > limit && it.hasNext()) {
+            sizeBytes -= it.next().getValue().estimateSizeBytes();
+            it.remove();
+            evictionCount++;
+        }
+    }
+
+    public static long hash(byte[] data) {
+        Hasher hasher = new Hasher();
+        hasher.update(data, 0, data.length);
+        return hasher.finish();
+    }
+
+    // Same value as hashing text.getBytes(UTF_8), without encoding the whole text first. A lone
+    // surrogate is the exception: the encoder turns it into '?', which would give "a\uD800b"
+    // the key of "a?b", so it is hashed as its 3 byte CESU-8 form, which UTF-8 input never has.
+    public static long hash(CharSequence text) {
+        Hasher hasher = new Hasher();
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                hasher.update(c);
+            } else if (c < 0x800) {
+                hasher.update(0xC0 | (c >> 6));
+                hasher.update(0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(text.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, text.charAt(++i));
+                hasher.update(0xF0 | (cp >> 18));
+                hasher.update(0x80 | ((cp >> 12) & 0x3F));
+                hasher.update(0x80 | ((cp >> 6) & 0x3F));
+                hasher.update(0x80 | (cp & 0x3F));
+            } else {
+                hasher.update(0xE0 | (c >> 12));
+                hasher.update(0x80 | ((c >> 6) & 0x3F));
+                hasher.update(0x80 | (c & 0x3F));
+            }
+        }
+        return hasher.finish();
+    }
+
+    // Size of text.getBytes(UTF_8)
+    static long utf8Length(CharSequence text) {
+        long bytes = 0;
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                bytes++;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(text.charAt(i + 1))) {
+                bytes += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                bytes++;
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+
+    // Consumes input 8 bytes at a time with xxHash64 style rounds
+    static final class Hasher {
+        private static final long PRIME_1 = 0x9E3779B185EBCA87L;
+        private static final long PRIME_2 = 0xC2B2AE3D27D4EB4FL;
+        private static final long PRIME_3 = 0x165667B19E3779F9L;
+
+        private long hash = PRIME_3;
+        private long block = 0;
+        private int blockBytes = 0;
+        private long length = 0;
+
+        void update(int b) {
+            block |= (long) (b & 0xFF) << (blockBytes << 3);
+            if (++blockBytes == 8) {
+                hash = round(hash, block);
+                block = 0;
+                blockBytes = 0;
+            }
+            length++;
+        }
+
+        void update(byte[] data, int offset, int count) {
+            for (int i = offset; i < offset + count; i++) {
+                update(data[i]);
+            }
+        }
+
+        long finish() {
+            long h = hash;
+            if (blockBytes > 0) h = round(h, block);
+            h ^= length;
+            h ^= h >>> 33;
+            h *= PRIME_2;
+            h ^= h >>> 29;
+            h *= PRIME_3;
+            h ^= h >>> 32;
+            return h;
+        }
+
+        private static long round(long hash, long input) {
+            input *= PRIME_2;
+            input = Long.rotateLeft(input, 31);
+            input *= PRIME_1;
+            hash ^= input;
+            return Long.rotateLeft(hash, 27) * PRIME_1 + PRIME_3;
+        }
+    }
+
+    // Hashes a stream while it is parsed, so streamed lyrics can be cached once fully read
+    static final class HashingInputStream extends FilterInputStream {
+        private final Hasher hasher = new Hasher();
+        private boolean reachedEnd = false;
+
+        HashingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b == -1) reachedEnd = true;
+            else hasher.update(b);
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int count) throws IOException {
+            int read = super.read(buffer, offset, count);
+            if (read == -1) reachedEnd = true;
+            else hasher.update(buffer, offset, read);
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            throw new IOException("skip not supported while hashing");
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        boolean isFullyRead() {
+            return reachedEnd;
+        }
+
+        long getHash() {
+            return hasher.finish();
+        }
+
+        long getByteCount() {
+            return hasher.length;
+        }
+    }
+}
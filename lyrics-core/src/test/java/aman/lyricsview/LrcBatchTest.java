@@ -0,0 +1,154 @@
+package aman.lyricsview;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+public class LrcBatchTest {
+
+    // Runs the submitted tasks only when asked, in any order
+    private static final class QueueExecutor implements Executor {
+        final List<Runnable> tasks = new ArrayList<>();
+
+        @Override
+        public void execute(Runnable task) {
+            tasks.add(task);
+        }
+    }
+
+    private static InputStream lrc(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void resultsAreInInputOrder() throws InterruptedException {
+        QueueExecutor executor = new QueueExecutor();
+        LrcBatch batch = LrcParser.parseAllStreams(Arrays.asList(
+                lrc("[00:01.00]First\n"), lrc("[00:02.00]Second\n"), lrc("[00:03.00]Third\n")), executor);
+        Collections.reverse(executor.tasks);
+        for (Runnable task : executor.tasks) task.run();
+
+        List<LrcBatch.Result> results = batch.await(1, TimeUnit.SECONDS);
+        assertNotNull(results);
+        for (int i = 0; i < 3; i++) {
+            LrcBatch.Result result = results.get(i);
+            assertEquals(i, result.index);
+            assertTrue(result.isSuccess());
+            assertEquals((i + 1) * 1000L, result.lines.get(0).startTime);
+        }
+        assertEquals(3, batch.getParsedCount());
+        assertEquals(0, batch.getFailedCount());
+    }
+
+    @Test
+    public void missingFileOnlyFailsItself() throws IOException, InterruptedException {
+        File file = File.createTempFile("lyrics", ".lrc");
+        try {
+            Files.write(file.toPath(), "[00:01.00]Here\n".getBytes(StandardCharsets.UTF_8));
+            File missing = new File(file.getParentFile(), file.getName() + ".missing");
+            LrcBatch batch = LrcParser.parseAll(Arrays.asList(missing, file), Runnable::run);
+
+            List<LrcBatch.Result> results = batch.await(1, TimeUnit.SECONDS);
+            assertNotNull(results);
+            assertTrue(results.get(0).error instanceof FileNotFoundException);
+            assertEquals(missing, results.get(0).file);
+            assertTrue(results.get(1).isSuccess());
+            assertEquals(1, results.get(1).lines.size());
+            assertEquals(1, batch.getFailedCount());
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void errorInOneTaskStillFinishesTheBatch() throws InterruptedException {
+        InputStream failing = new InputStream() {
+            @Override
+            public int read() {
+                throw new OutOfMemoryError("test");
+            }
+        };
+        LrcBatch batch = LrcParser.parseAllStreams(Arrays.asList(failing, lrc("[00:01.00]Fine\n")), Runnable::run);
+
+        List<LrcBatch.Result> results = batch.await(1, TimeUnit.SECONDS);
+        assertNotNull(results);
+        assertTrue(results.get(0).error instanceof ExecutionException);
+        assertTrue(results.get(0).error.getCause() instanceof OutOfMemoryError);
+        assertTrue(results.get(1).isSuccess());
+        assertTrue(batch.isDone());
+    }
+
+    @Test
+    public void inputOverTheLimitFails() throws InterruptedException {
+        InputStream endless = new InputStream() {
+            @Override
+            public int read() {
+                return 'a';
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) {
+                Arrays.fill(b, off, off + len, (byte) 'a');
+                return len;
+            }
+        };
+        LrcBatch batch = LrcParser.parseAllStreams(Collections.singletonList(endless), Runnable::run);
+
+        List<LrcBatch.Result> results = batch.await(1, TimeUnit.SECONDS);
+        assertNotNull(results);
+        assertTrue(results.get(0).error instanceof IOException);
+    }
+
+    @Test
+    public void cancelFailsInputsThatHaveNotStarted() throws InterruptedException {
+        QueueExecutor executor = new QueueExecutor();
+        LrcBatch batch = LrcParser.parseAllStreams(Arrays.asList(lrc("[00:01.00]One\n"), lrc("[00:02.00]Two\n")), executor);
+        executor.tasks.get(0).run();
+        batch.cancel();
+        assertTrue(batch.isCancelled());
+        assertFalse(batch.isDone());
+        executor.tasks.get(1).run();
+
+        List<LrcBatch.Result> results = batch.await(1, TimeUnit.SECONDS);
+        assertNotNull(results);
+        assertTrue(results.get(0).isSuccess());
+        assertTrue(results.get(1).isCancelled());
+        assertNull(results.get(1).lines);
+    }
+
+    @Test
+    public void shutDownExecutorFailsEveryInput() throws InterruptedException {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        executor.shutdown();
+        LrcBatch batch = LrcParser.parseAllStreams(Arrays.asList(lrc("[00:01.00]One\n"), lrc("[00:02.00]Two\n")), executor);
+
+        List<LrcBatch.Result> results = batch.await(1, TimeUnit.SECONDS);
+        assertNotNull(results);
+        for (LrcBatch.Result result : results) {
+            assertTrue(result.error instanceof RejectedExecutionException);
+        }
+        assertEquals(2, batch.getFailedCount());
+    }
+}
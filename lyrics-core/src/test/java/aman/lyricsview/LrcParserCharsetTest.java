@@ -0,0 +1,75 @@
+package aman.lyricsview;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+public class LrcParserCharsetTest {
+
+    private static final String CHINESE = "[00:01.00]我们一起去看海\n[00:05.00]月亮代表我的心 你问我爱你有多深\n";
+    private static final String JAPANESE = "[00:01.00]さくら さくら やよいの空は\n[00:05.00]見わたす限り かすみか雲か\n";
+    private static final String KOREAN = "[00:01.00]사랑해요 너를\n[00:05.00]그대 없이는 못 살아\n";
+
+    @Test
+    public void utf8() {
+        assertDetected("[00:01.00]Grüße 夢 😀\n", StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void utf16WithoutBom() {
+        assertDetected(JAPANESE, StandardCharsets.UTF_16LE);
+        assertDetected(CHINESE, StandardCharsets.UTF_16BE);
+    }
+
+    @Test
+    public void gbk() {
+        assertDetected(CHINESE, Charset.forName("GBK"));
+        assertDetected("[00:01.00]我爱你\n", Charset.forName("GBK"));
+    }
+
+    @Test
+    public void shiftJis() {
+        assertDetected(JAPANESE, Charset.forName("Shift_JIS"));
+    }
+
+    // A single kanji decodes without errors in GBK as well, and has no kana to go by
+    @Test
+    public void shortShiftJisLine() {
+        assertDetected("[00:01.00]夢\n", Charset.forName("Shift_JIS"));
+        assertDetected("[00:01.00]桜\n", Charset.forName("Shift_JIS"));
+    }
+
+    // Every EUC-KR pair is valid GBK
+    @Test
+    public void eucKr() {
+        assertDetected(KOREAN, Charset.forName("EUC-KR"));
+        assertDetected("[00:01.00]사랑\n", Charset.forName("EUC-KR"));
+    }
+
+    // Two adjacent accented letters form a valid GBK pair, which used to read as "Gr?e"
+    @Test
+    public void windows1252AdjacentAccents() {
+        assertDetected("[00:01.00]Grüße\n", Charset.forName("windows-1252"));
+    }
+
+    @Test
+    public void windows1252LoneAccents() {
+        assertDetected("[00:01.00]Décembre à\n", Charset.forName("windows-1252"));
+        assertDetected("[00:01.00]Ça va très bien\n[00:03.00]Señorita, mañana\n", Charset.forName("windows-1252"));
+    }
+
+    // The charset is guessed from the whole buffer and from the head of a stream; both
+    // have to pick it and decode the text like the string it came from
+    private static void assertDetected(String text, Charset charset) {
+        byte[] bytes = text.getBytes(charset);
+        assertEquals(charset, LrcParser.detectCharset(ByteBuffer.wrap(bytes)));
+        String expected = LrcParserTest.dump(LrcParser.parse((CharSequence) text));
+        assertEquals(expected, LrcParserTest.dump(LrcParser.parse(ByteBuffer.wrap(bytes))));
+        assertEquals(expected, LrcParserTest.dump(LrcParser.parse(new ByteArrayInputStream(bytes))));
+    }
+}
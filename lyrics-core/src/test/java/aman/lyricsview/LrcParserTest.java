@@ -0,0 +1,226 @@
+package aman.lyricsview;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+// Golden outputs of the regex based parser the single pass scanner replaced, one per
+// corner case. Every entry point has to produce exactly the same lines.
+public class LrcParserTest {
+
+    private static void assertParsesLikeRegexParser(String input, String expected) {
+        byte[] bytes = input.getBytes(StandardCharsets.UTF_8);
+        assertEquals("InputStream", expected, dump(LrcParser.parse(new ByteArrayInputStream(bytes))));
+        assertEquals("CharSequence", expected, dump(LrcParser.parse((CharSequence) input)));
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+        direct.put(bytes).flip();
+        assertEquals("direct ByteBuffer", expected, dump(LrcParser.parse(direct)));
+
+        final LyricsAccumulator accumulator = new LyricsAccumulator();
+        LrcParser.parse(new ByteArrayInputStream(bytes), new LrcParser.ParseListener() {
+            @Override
+            public void onLinesParsed(List<LyricLine> lines) {
+                accumulator.addAll(lines);
+            }
+
+            @Override
+            public void onParseComplete() {
+            }
+        });
+        assertEquals("streamed", expected, dump(accumulator.getLines()));
+    }
+
+    // start|end|vocal|line or word synced[|bg]: <time>text per word
+    static String dump(List<LyricLine> lines) {
+        StringBuilder sb = new StringBuilder();
+        for (LyricLine line : lines) {
+            sb.append(line.startTime).append('|').append(line.endTime).append('|').append(line.vocalType).append('|')
+                    .append(line.isWordSynced ? "word" : "line").append(line.isBackground ? "|bg" : "").append(':');
+            for (LyricWord word : line.words) sb.append(" <").append(word.time).append('>').append(word.text);
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    @Test
+    public void standardLine() {
+        assertParsesLikeRegexParser("[00:12.50] This is a standard lyric line",
+                "12500|15500|1|line: <12500>This  <12500>is  <12500>a  <12500>standard  <12500>lyric  <12500>line \n");
+    }
+
+    @Test
+    public void wordTimed() {
+        assertParsesLikeRegexParser("[00:15.00] <00:15.10>Hello <00:15.50>World <00:16.00>!",
+                "15000|18000|1|word: <15100>Hello  <15500>World  <16000>!\n");
+    }
+
+    @Test
+    public void wordTimedWithEndStamp() {
+        assertParsesLikeRegexParser("[00:15.00]<00:15.10>Hello <00:15.50>World<00:16.20>",
+                "15000|16200|1|word: <15100>Hello  <15500>World\n");
+    }
+
+    @Test
+    public void duet() {
+        assertParsesLikeRegexParser("[00:20.00] v1: Singer One\n[00:25.00] v2: Singer Two\n[00:22.00]Speaker: plain line",
+                "20000|22000|1|line: <20000>Singer  <20000>One \n" +
+                "22000|25000|1|line: <22000>plain  <22000>line \n" +
+                "25000|28000|2|line: <25000>Singer  <25000>Two \n");
+    }
+
+    @Test
+    public void backgroundInline() {
+        assertParsesLikeRegexParser("[00:30.00] [bg:] (Backing vocals here...)\n[00:30.00] Lead line",
+                "30000|33000|1|line: <30000>]  <30000>(Backing  <30000>vocals  <30000>here...) \n" +
+                "30000|33000|1|line: <30000>Lead  <30000>line \n");
+    }
+
+    @Test
+    public void backgroundStandalone() {
+        assertParsesLikeRegexParser("[bg: <00:30.50> Ooh <00:31.00> Aah]\n[00:30.00]Lead\n[bg:no stamps]",
+                "30000|30500|1|line: <30000>Lead \n" +
+                "30500|33500|1|word|bg: <30500> Ooh  <31000> Aah\n");
+    }
+
+    @Test
+    public void multipleStamps() {
+        assertParsesLikeRegexParser("[00:01.00][00:05.00]Repeated chorus\n[00:03.00]Between",
+                "1000|3000|1|line: <1000>05.00]Repeated  <1000>chorus \n" +
+                "3000|6000|1|line: <3000>Between \n");
+    }
+
+    @Test
+    public void malformedStamps() {
+        assertParsesLikeRegexParser("[0:01.00]Short minute\n[00:01.0]Short fraction\n[00:01.0000]Long fraction\n[00:0a.00]Letter\n[00:01.00 Unclosed\n<00:02.00 word\n[00:04.00]<00:04.1>bad <00:04.20>good",
+                "-1|0|1|line: <-1>[0:01.00]Short  <-1>minute \n" +
+                "-1|0|1|line: <-1>[00:01.0]Short  <-1>fraction \n" +
+                "-1|0|1|line: <-1>[00:01.0000]Long  <-1>fraction \n" +
+                "-1|0|1|line: <-1>[00:0a.00]Letter \n" +
+                "-1|0|1|line: <-1>[00:01.00  <-1>Unclosed \n" +
+                "-1|0|1|line: <-1><00:02.00  <-1>word \n" +
+                "4000|7000|1|word: <4200>good\n");
+    }
+
+    @Test
+    public void partialStamps() {
+        assertParsesLikeRegexParser("[00:0\n[00:01.00]\n[\n<\n[00:02.00]text <00:02.50\n[ar:Artist]\n[ti:Title]",
+                "-1|0|1|line: <-1>[00:0 \n" +
+                "-1|0|1|line: <-1>[ \n" +
+                "-1|0|1|line: <-1>< \n" +
+                "-1|0|1|line: <-1>[ar:Artist] \n" +
+                "-1|0|1|line: <-1>[ti:Title] \n" +
+                "1000|2000|1|line:\n" +
+                "2000|5000|1|line: <2000>text  <2000><00:02.50 \n");
+    }
+
+    @Test
+    public void crlf() {
+        assertParsesLikeRegexParser("[00:01.00]First\r\n[00:02.00]Second\r\n\r\n[00:03.00]<00:03.00>Third <00:03.50>word\r\n",
+                "1000|2000|1|line: <1000>First \n" +
+                "2000|3000|1|line: <2000>Second \n" +
+                "3000|6000|1|word: <3000>Third  <3500>word\n");
+    }
+
+    @Test
+    public void bareCr() {
+        assertParsesLikeRegexParser("[00:01.00]First\r[00:02.00]Second\r",
+                "1000|2000|1|line: <1000>First \n" +
+                "2000|5000|1|line: <2000>Second \n");
+    }
+
+    @Test
+    public void bom() {
+        assertParsesLikeRegexParser("\uFEFF[00:01.00]First\n[00:02.00]Second",
+                "1000|2000|1|line: <1000>First \n" +
+                "2000|5000|1|line: <2000>Second \n");
+    }
+
+    @Test
+    public void offsetTag() {
+        assertParsesLikeRegexParser("[offset:+500]\n[00:01.00]After offset\n[offset:-250]",
+                "-1|0|1|line: <-1>[offset:+500] \n" +
+                "-1|0|1|line: <-1>[offset:-250] \n" +
+                "1000|4000|1|line: <1000>After  <1000>offset \n");
+    }
+
+    @Test
+    public void emptyLines() {
+        assertParsesLikeRegexParser("\n\n[00:01.00]A\n   \n\t\n[00:02.00]\n[00:03.00]   \n[00:04.00]B\n",
+                "1000|2000|1|line: <1000>A \n" +
+                "2000|3000|1|line:\n" +
+                "3000|4000|1|line: <3000>   \n" +
+                "4000|7000|1|line: <4000>B \n");
+    }
+
+    @Test
+    public void unsynced() {
+        assertParsesLikeRegexParser("Just some text\nwith  double  spaces\n\nand a:colon",
+                "-1|0|1|line: <-1>Just  <-1>some  <-1>text \n" +
+                "-1|0|1|line: <-1>with  <-1>double  <-1>spaces \n" +
+                "-1|0|1|line: <-1>and  <-1>a:colon \n");
+    }
+
+    @Test
+    public void mixedOrder() {
+        assertParsesLikeRegexParser("[00:10.00]Ten\nPlain header\n[00:05.00]Five\n[00:05.00]v2:Five again\n[00:05.00][bg:<00:05.10>ooh]",
+                "-1|0|1|line: <-1>Plain  <-1>header \n" +
+                "5000|10000|1|line: <5000>Five \n" +
+                "5000|10000|2|line: <5000>Five  <5000>again \n" +
+                "5000|10000|1|word|bg: <5100>ooh\n" +
+                "10000|13000|1|line: <10000>Ten \n");
+    }
+
+    @Test
+    public void unicode() {
+        assertParsesLikeRegexParser("[00:01.00]\u6642\u9593 \u3067\u3059\n[00:02.00]<00:02.00>Gr\u00FC\u00DFe <00:02.50>\u00E0\u3000tous",
+                "1000|2000|1|line: <1000>\u6642\u9593  <1000>\u3067\u3059 \n" +
+                "2000|5000|1|word: <2000>Gr\u00FC\u00DFe  <2500>\u00E0\u3000tous\n");
+    }
+
+    // Decoding with it throws, as a stand-in for any failure inside the parser
+    private static final Charset BROKEN_CHARSET = new Charset("x-broken", null) {
+        @Override
+        public boolean contains(Charset cs) {
+            return false;
+        }
+
+        @Override
+        public CharsetDecoder newDecoder() {
+            throw new IllegalStateException("broken decoder");
+        }
+
+        @Override
+        public CharsetEncoder newEncoder() {
+            throw new UnsupportedOperationException();
+        }
+    };
+
+    @Test
+    public void parseReturnsNoLinesOnFailure() {
+        ByteBuffer buffer = ByteBuffer.wrap("[00:01.00]Line".getBytes(StandardCharsets.UTF_8));
+        assertTrue(LrcParser.parse(buffer, BROKEN_CHARSET).isEmpty());
+    }
+
+    // LrcBatch reports what this throws as the Result error
+    @Test
+    public void parseOrThrowPropagatesFailure() {
+        ByteBuffer buffer = ByteBuffer.wrap("[00:01.00]Line".getBytes(StandardCharsets.UTF_8));
+        try {
+            LrcParser.parseOrThrow(buffer, BROKEN_CHARSET);
+            fail("Parsed with a broken charset");
+        } catch (IllegalStateException e) {
+            assertEquals("broken decoder", e.getMessage());
+        }
+    }
+}
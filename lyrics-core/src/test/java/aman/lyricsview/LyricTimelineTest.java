@@ -0,0 +1,181 @@
+package aman.lyricsview;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+// Binary searches, the cursor and the interval tree against linear scans over random lines
+public class LyricTimelineTest {
+
+    private static final int ROUNDS = 300;
+
+    @Test
+    public void lineAtAndNextLineMatchLinearScan() {
+        Random random = new Random(1);
+        for (int round = 0; round < ROUNDS; round++) {
+            CompiledLyrics lyrics = randomLyrics(random, round % 3 == 0);
+            LyricTimeline timeline = new LyricTimeline(lyrics);
+            for (long time = -200; time <= maxTime(lyrics) + 200; time += 7) {
+                int expected = linearLineAt(lyrics, time);
+                assertEquals("round " + round + " at " + time, expected, timeline.lineAt(time));
+                int expectedNext = (expected + 1 < lyrics.getLineCount()) ? expected + 1 : -1;
+                assertEquals("round " + round + " at " + time, expectedNext, timeline.nextLine(time));
+            }
+        }
+    }
+
+    // Small steps forward, jumps over more than MAX_STEPS lines and seeks backwards
+    @Test
+    public void cursorMatchesLinearScanThroughSeeks() {
+        Random random = new Random(2);
+        for (int round = 0; round < ROUNDS; round++) {
+            CompiledLyrics lyrics = randomLyrics(random, round % 3 == 0);
+            LyricTimeline timeline = new LyricTimeline(lyrics);
+            LyricTimeline.Cursor cursor = timeline.newCursor();
+            long end = maxTime(lyrics) + 200;
+            long time = -100;
+            for (int move = 0; move < 400; move++) {
+                int kind = random.nextInt(10);
+                if (kind < 6) time += random.nextInt(60); // Playing, including standing still
+                else if (kind < 8) time += 500 + random.nextInt(3000); // Many lines at once
+                else time = random.nextInt((int) end + 100) - 100; // Seek, often backwards
+                int expected = linearLineAt(lyrics, time);
+                assertEquals("round " + round + " at " + time, expected, cursor.moveTo(time));
+                assertEquals(expected, cursor.getLine());
+                assertEquals((expected + 1 < lyrics.getLineCount()) ? expected + 1 : -1, cursor.getNextLine());
+            }
+        }
+    }
+
+    @Test
+    public void cursorStepsThroughLongRunOfEqualStarts() {
+        List<LyricLine> lines = new ArrayList<>();
+        for (int i = 0; i < 40; i++) lines.add(line(i < 20 ? 1000 : 1000 + i, 5000));
+        LyricTimeline timeline = new LyricTimeline(CompiledLyrics.compile(lines));
+        LyricTimeline.Cursor cursor = timeline.newCursor();
+        assertEquals(-1, cursor.moveTo(999));
+        assertEquals(19, cursor.moveTo(1000)); // Twenty lines in one move
+        assertEquals(25, cursor.moveTo(1025));
+        assertEquals(39, cursor.moveTo(2000));
+        assertEquals(-1, cursor.getNextLine());
+        assertEquals(19, cursor.moveTo(1019));
+        assertEquals(-1, cursor.moveTo(0));
+    }
+
+    @Test
+    public void activeLinesMatchBruteForce() {
+        Random random = new Random(3);
+        int[] out = new int[64];
+        for (int round = 0; round < ROUNDS; round++) {
+            CompiledLyrics lyrics = randomLyrics(random, round % 3 == 0);
+            LyricTimeline timeline = new LyricTimeline(lyrics);
+            for (long time = -200; time <= maxTime(lyrics) + 200; time += 7) {
+                int[] expected = bruteForceActive(lyrics, time);
+                int count = timeline.activeLines(time, out);
+                assertEquals("round " + round + " at " + time, expected.length, count);
+                assertArrayEquals("round " + round + " at " + time, expected, Arrays.copyOf(out, count));
+            }
+        }
+    }
+
+    // A short out still gets the total, filled with some of the active lines, no order promised
+    @Test
+    public void activeLinesReportsTotalWhenOutIsTooSmall() {
+        Random random = new Random(4);
+        int checked = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            CompiledLyrics lyrics = randomLyrics(random, false);
+            LyricTimeline timeline = new LyricTimeline(lyrics);
+            for (long time = 0; time <= maxTime(lyrics); time += 13) {
+                int[] expected = bruteForceActive(lyrics, time);
+                if (expected.length < 2) continue;
+                Set<Integer> active = new HashSet<>();
+                for (int line : expected) active.add(line);
+
+                int[] exact = new int[expected.length];
+                assertEquals(expected.length, timeline.activeLines(time, exact));
+                assertArrayEquals(expected, exact);
+
+                int[] small = new int[expected.length - 1];
+                Arrays.fill(small, -1);
+                assertEquals(expected.length, timeline.activeLines(time, small));
+                Set<Integer> written = new HashSet<>();
+                for (int line : small) {
+                    assertTrue("round " + round + " at " + time, active.contains(line));
+                    assertTrue(written.add(line));
+                }
+                assertEquals(expected.length, timeline.activeLines(time, new int[0]));
+                checked++;
+            }
+        }
+        assertTrue(checked > 100);
+    }
+
+    @Test
+    public void emptyLyrics() {
+        LyricTimeline timeline = new LyricTimeline(CompiledLyrics.EMPTY);
+        assertEquals(-1, timeline.lineAt(1000));
+        assertEquals(-1, timeline.nextLine(1000));
+        assertEquals(0, timeline.activeLines(1000, new int[4]));
+        assertEquals(-1, timeline.newCursor().moveTo(1000));
+    }
+
+    // Up to 120 lines with starts on a coarse grid, so many are equal, and overlapping ends.
+    // Unsorted sets also get unsynced lines (start -1) and lines that end before they start.
+    private static CompiledLyrics randomLyrics(Random random, boolean sorted) {
+        int lineCount = random.nextInt(120);
+        List<LyricLine> lines = new ArrayList<>();
+        for (int i = 0; i < lineCount; i++) {
+            long start = random.nextInt(200) * 50L;
+            long end = start + random.nextInt(4000);
+            if (!sorted) {
+                int odd = random.nextInt(20);
+                if (odd == 0) start = -1;
+                else if (odd == 1) end = start - 1 - random.nextInt(100);
+            }
+            lines.add(line(start, end));
+        }
+        if (sorted) lines.sort((a, b) -> Long.compare(a.startTime, b.startTime));
+        return CompiledLyrics.compile(lines);
+    }
+
+    private static LyricLine line(long start, long end) {
+        LyricLine line = new LyricLine(start);
+        line.endTime = end;
+        return line;
+    }
+
+    private static long maxTime(CompiledLyrics lyrics) {
+        long max = 0;
+        for (int i = 0; i < lyrics.getLineCount(); i++) max = Math.max(max, lyrics.getLineEndTime(i));
+        return max;
+    }
+
+    // The view's original rule: walk forward while the lines have started
+    private static int linearLineAt(CompiledLyrics lyrics, long time) {
+        int line = -1;
+        while (line + 1 < lyrics.getLineCount() && lyrics.getLineStartTime(line + 1) <= time) line++;
+        return line;
+    }
+
+    private static int[] bruteForceActive(CompiledLyrics lyrics, long time) {
+        List<Integer> active = new ArrayList<>();
+        for (int i = 0; i < lyrics.getLineCount(); i++) {
+            long start = lyrics.getLineStartTime(i);
+            long end = lyrics.getLineEndTime(i);
+            if (start != -1 && end >= start && start <= time && time <= end) active.add(i);
+        }
+        int[] result = new int[active.size()];
+        for (int i = 0; i < result.length; i++) result[i] = active.get(i);
+        return result;
+    }
+}
@@ -0,0 +1,191 @@
+package aman.lyricsview;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+public class LyricTimingTest {
+
+    // The rule scroll targets used before the interval index: only lines i-1 and i-2 count
+    private static float oldScrollTarget(CompiledLyrics lyrics, float[] lineCenterY, int i) {
+        float centerCur = Float.isNaN(lineCenterY[i]) ? 0f : lineCenterY[i];
+        long start = lyrics.getLineStartTime(i);
+        if (start == -1) return centerCur;
+
+        boolean overlapsPrev = i > 0 && start < lyrics.getLineEndTime(i - 1);
+        boolean overlapsPrevPrev = i > 1 && start < lyrics.getLineEndTime(i - 2);
+        if (overlapsPrevPrev) {
+            return Float.isNaN(lineCenterY[i - 1]) ? centerCur : lineCenterY[i - 1];
+        } else if (overlapsPrev) {
+            return Float.isNaN(lineCenterY[i - 1]) ? centerCur : (lineCenterY[i - 1] + centerCur) / 2f;
+        }
+        return centerCur;
+    }
+
+    private static LyricLine line(long start, long end) {
+        LyricLine line = new LyricLine(start);
+        line.endTime = end;
+        line.words.add(new LyricWord(start, "word"));
+        return line;
+    }
+
+    private static float[] centers(int count) {
+        float[] centers = new float[count];
+        for (int i = 0; i < count; i++) centers[i] = 100f * i + 50f;
+        return centers;
+    }
+
+    private static float[] scrollTargets(CompiledLyrics lyrics, float[] lineCenterY) {
+        float[] targets = new float[lyrics.getLineCount()];
+        LyricTiming.scrollTargets(new LyricTimeline(lyrics), lineCenterY, targets);
+        return targets;
+    }
+
+    // Line 1 is short and over, but line 0 is still sung when line 2 starts
+    @Test
+    public void onlyLineBeforePreviousOverlaps() {
+        List<LyricLine> lines = new ArrayList<>();
+        lines.add(line(0, 5000));
+        lines.add(line(1000, 1500));
+        lines.add(line(2000, 3000));
+        CompiledLyrics lyrics = CompiledLyrics.compile(lines);
+        float[] centers = {50f, 120f, 300f};
+        assertEquals(centers[1], scrollTargets(lyrics, centers)[2], 0f);
+    }
+
+    // Line 0 outlasts lines 1 and 2, which the old rule never looked back far enough to see
+    @Test
+    public void earlierLongLineOverlaps() {
+        List<LyricLine> lines = new ArrayList<>();
+        lines.add(line(0, 10000));
+        lines.add(line(1000, 1500));
+        lines.add(line(2000, 2500));
+        lines.add(line(3000, 4000));
+        CompiledLyrics lyrics = CompiledLyrics.compile(lines);
+        float[] centers = centers(4);
+        assertEquals(centers[3], scrollTargets(lyrics, centers)[3], 0f);
+    }
+
+    // Three earlier lines still sung: the middle of all four
+    @Test
+    public void deepStackScrollsToItsMiddle() {
+        List<LyricLine> lines = new ArrayList<>();
+        lines.add(line(0, 10000));
+        lines.add(line(1000, 10000));
+        lines.add(line(2000, 10000));
+        lines.add(line(3000, 10000));
+        CompiledLyrics lyrics = CompiledLyrics.compile(lines);
+        float[] centers = centers(4);
+        float[] targets = scrollTargets(lyrics, centers);
+        assertEquals((centers[1] + centers[2]) / 2f, targets[3], 0f);
+        assertEquals(centers[1], targets[2], 0f);
+        assertEquals((centers[0] + centers[1]) / 2f, targets[1], 0f);
+    }
+
+    // Random duets, long lines, unsynced lines and lines without a center: wherever at most
+    // two earlier lines are still sung the targets are exactly the old ones
+    @Test
+    public void matchesOldRuleUpToTwoOverlappingLines() {
+        Random random = new Random(14);
+        int compared = 0;
+        for (int round = 0; round < 200; round++) {
+            List<LyricLine> lines = new ArrayList<>();
+            if (random.nextInt(4) == 0) {
+                LyricLine unsynced = new LyricLine(-1);
+                unsynced.words.add(new LyricWord(-1, "unsynced"));
+                lines.add(unsynced);
+            }
+            long start = 0;
+            int count = 5 + random.nextInt(40);
+            for (int i = 0; i < count; i++) {
+                start += random.nextInt(4) == 0 ? 0 : random.nextInt(3000);
+                long duration = random.nextInt(8) == 0 ? 4000 + random.nextInt(12000) : 200 + random.nextInt(3000);
+                lines.add(line(start, start + duration));
+            }
+            lines.sort(LrcParser.LINE_ORDER);
+            CompiledLyrics lyrics = CompiledLyrics.compile(lines);
+            float[] centers = centers(lyrics.getLineCount());
+            for (int i = 0; i < centers.length; i++) {
+                if (random.nextInt(10) == 0) centers[i] = Float.NaN;
+            }
+
+            float[] targets = scrollTargets(lyrics, centers);
+            for (int i = 0; i < targets.length; i++) {
+                if (earlierLinesSung(lyrics, centers, i) > 2) continue;
+                assertEquals("round " + round + " line " + i, oldScrollTarget(lyrics, centers, i), targets[i], 0f);
+                compared++;
+            }
+        }
+        assertTrue(compared > 1000);
+    }
+
+    private static int earlierLinesSung(CompiledLyrics lyrics, float[] lineCenterY, int line) {
+        long start = lyrics.getLineStartTime(line);
+        if (start == -1) return 0;
+        int count = 0;
+        for (int other = 0; other < line; other++) {
+            if (lyrics.getLineStartTime(other) != -1 && lyrics.getLineStartTime(other) <= start
+                    && start < lyrics.getLineEndTime(other) && !Float.isNaN(lineCenterY[other])) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    // Scroll targets used to be kept in HashMap<LyricLine, Float> maps keyed by the parsed
+    // lines; the per-line arrays have to give the same targets for a parsed duet with
+    // background vocals
+    @Test
+    public void matchesMapBasedTargets() {
+        String lrc = "[ti:Duet]\n"
+                + "Unsynced line\n"
+                + "[00:01.00]v1: <00:01.00>First <00:02.00>voice<00:06.00>\n"
+                + "[bg:<00:01.50>(echo)<00:03.00>]\n"
+                + "[00:02.50]v2: Second voice\n"
+                + "[00:04.00]v1: Both again\n"
+                + "[00:04.20]v2: Answer\n"
+                + "[00:09.00]\n"
+                + "[00:10.00]Solo\n";
+        List<LyricLine> lines = LrcParser.parse((CharSequence) lrc);
+        Map<LyricLine, Float> lineCenterYMap = new HashMap<>();
+        float[] lineCenterY = new float[lines.size()];
+        float y = 0;
+        for (int i = 0; i < lines.size(); i++) {
+            LyricLine line = lines.get(i);
+            if (line.words.isEmpty()) {
+                lineCenterY[i] = Float.NaN;
+                continue;
+            }
+            y += line.isBackground ? 40f : 75f;
+            lineCenterY[i] = y;
+            lineCenterYMap.put(line, y);
+        }
+
+        float[] targets = scrollTargets(CompiledLyrics.compile(lines), lineCenterY);
+        for (int i = 0; i < lines.size(); i++) {
+            LyricLine current = lines.get(i);
+            Float centerCur = lineCenterYMap.get(current);
+            if (centerCur == null) centerCur = 0f;
+            float expected = centerCur;
+            if (current.startTime != -1) {
+                boolean overlapsPrev = i > 0 && current.startTime < lines.get(i - 1).endTime;
+                boolean overlapsPrevPrev = i > 1 && current.startTime < lines.get(i - 2).endTime;
+                if (overlapsPrevPrev) {
+                    Float centerMid = lineCenterYMap.get(lines.get(i - 1));
+                    if (centerMid != null) expected = centerMid;
+                } else if (overlapsPrev) {
+                    Float centerPrev = lineCenterYMap.get(lines.get(i - 1));
+                    if (centerPrev != null) expected = (centerPrev + centerCur) / 2f;
+                }
+            }
+            assertEquals("line " + i, expected, targets[i], 0f);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package aman.lyricsview;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class LyricsAccumulatorTest {
+
+    private static final String LRC = "[00:01.00]<00:01.00>One <00:01.50>two\n"
+            + "[00:03.00]Three\n"
+            + "[bg:<00:03.20>(three <00:03.60>again)]\n"
+            + "[00:02.00]Out of order\n"
+            + "[00:05.00][00:07.00]Repeated\n"
+            + "[00:06.00]Six\n"
+            + "[00:04.00]Four\n"
+            + "[00:09.00]Nine\n";
+
+    // Snapshots compiled on top of the previous one, as the view does while streaming, have
+    // to match compiling everything at once after each batch
+    @Test
+    public void incrementalCompileMatchesFullCompile() {
+        List<LyricLine> parsed = LrcParser.parse((CharSequence) LRC);
+        for (int batchSize = 1; batchSize <= 3; batchSize++) {
+            List<LyricLine> source = streamedLines();
+            LyricsAccumulator accumulator = new LyricsAccumulator();
+            CompiledLyrics snapshot = CompiledLyrics.EMPTY;
+            for (int from = 0; from < source.size(); from += batchSize) {
+                accumulator.addAll(new ArrayList<>(source.subList(from, Math.min(from + batchSize, source.size()))));
+                snapshot = CompiledLyrics.compile(snapshot, accumulator.getLines(), accumulator.takeFirstChangedLine());
+                assertCompiledEqual(CompiledLyrics.compile(accumulator.getLines()), snapshot);
+            }
+            assertEquals(LrcParserTest.dump(parsed), LrcParserTest.dump(snapshot.toLyricLines()));
+        }
+    }
+
+    // Lines as the streaming parser hands them out, before any end time is inferred
+    private static List<LyricLine> streamedLines() {
+        final List<LyricLine> lines = new ArrayList<>();
+        LrcParser.parse(LRC, new LrcParser.ParseListener() {
+            @Override
+            public void onLinesParsed(List<LyricLine> batch) {
+                lines.addAll(batch);
+            }
+
+            @Override
+            public void onParseComplete() {
+            }
+        });
+        return lines;
+    }
+
+    @Test
+    public void nothingChangedAfterTake() {
+        LyricsAccumulator accumulator = new LyricsAccumulator();
+        accumulator.addAll(LrcParser.parse((CharSequence) LRC));
+        assertEquals(0, accumulator.takeFirstChangedLine());
+        assertEquals(accumulator.getLines().size(), accumulator.takeFirstChangedLine());
+    }
+
+    private static void assertCompiledEqual(CompiledLyrics expected, CompiledLyrics actual) {
+        assertEquals(LrcParserTest.dump(expected.toLyricLines()), LrcParserTest.dump(actual.toLyricLines()));
+        assertEquals(expected.getWordCount(), actual.getWordCount());
+        for (int w = 0; w < expected.getWordCount(); w++) {
+            assertEquals(expected.getWordEndTime(w), actual.getWordEndTime(w));
+            assertEquals(expected.getWordProgress(w, expected.getWordTime(w) + 100), actual.getWordProgress(w, actual.getWordTime(w) + 100), 0f);
+            assertEquals(expected.getWordTextStart(w), actual.getWordTextStart(w));
+        }
+    }
+}
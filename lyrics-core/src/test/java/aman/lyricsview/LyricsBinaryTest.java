@@ -0,0 +1,163 @@
+package aman.lyricsview;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+public class LyricsBinaryTest {
+
+    private static final String LRC = "[ti:Binary]\n"
+            + "[00:01.00]<00:01.00>Word <00:01.40>timed <00:01.90>line<00:02.50>\n"
+            + "[bg:<00:02.00>(back<00:02.30>ground)]\n"
+            + "[00:03.00]v2: Second voice\n"
+            + "[00:03.00]Same start\n"
+            + "\n"
+            + "[00:05.00][00:09.00]Repeated\n"
+            + "[00:07.25]夏の夜 もう一度 🎵\n"
+            + "[01:02.03]Grüße\n"
+            + "[99:59.99]Last\n";
+
+    private static final String EXPECTED = LrcParserTest.dump(LrcParser.parse((CharSequence) LRC));
+
+    private static byte[] compiled() {
+        return LyricsBinaryWriter.toByteArray(CompiledLyrics.compile(LrcParser.parse((CharSequence) LRC)));
+    }
+
+    @Test
+    public void roundTripHeapBuffer() throws IOException {
+        assertEquals(EXPECTED, dump(LyricsBinaryReader.read(ByteBuffer.wrap(compiled()))));
+    }
+
+    @Test
+    public void roundTripDirectBuffer() throws IOException {
+        byte[] bytes = compiled();
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+        direct.put(bytes).flip();
+        assertEquals(EXPECTED, dump(LyricsBinaryReader.read(direct)));
+    }
+
+    @Test
+    public void roundTripReadsFromPosition() throws IOException {
+        byte[] bytes = compiled();
+        ByteBuffer buffer = ByteBuffer.allocate(bytes.length + 3);
+        buffer.put(new byte[] {1, 2, 3}).put(bytes).position(3);
+        assertEquals(EXPECTED, dump(LyricsBinaryReader.read(buffer)));
+        assertEquals(3, buffer.position());
+    }
+
+    @Test
+    public void roundTripMappedFile() throws IOException {
+        File file = File.createTempFile("lyrics", ".lrcb");
+        try {
+            try (FileOutputStream out = new FileOutputStream(file)) {
+                LyricsBinaryWriter.write(LrcParser.parse((CharSequence) LRC), out);
+            }
+            try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+                 FileChannel channel = raf.getChannel()) {
+                ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                assertEquals(EXPECTED, dump(LyricsBinaryReader.read(mapped)));
+                assertEquals(EXPECTED, dump(LyricsBinaryReader.read(channel)));
+            }
+            assertEquals(EXPECTED, dump(LyricsBinaryReader.read(file)));
+        } finally {
+            assertTrue(file.delete());
+        }
+    }
+
+    @Test
+    public void roundTripEmpty() throws IOException {
+        byte[] bytes = LyricsBinaryWriter.toByteArray(CompiledLyrics.EMPTY);
+        assertTrue(LyricsBinaryReader.read(ByteBuffer.wrap(bytes)).isEmpty());
+    }
+
+    @Test
+    public void roundTripKeepsWordTimings() throws IOException {
+        CompiledLyrics expected = CompiledLyrics.compile(LrcParser.parse((CharSequence) LRC));
+        CompiledLyrics actual = LyricsBinaryReader.read(ByteBuffer.wrap(compiled()));
+        assertEquals(expected.getWordCount(), actual.getWordCount());
+        for (int w = 0; w < expected.getWordCount(); w++) {
+            assertEquals(expected.getWordTime(w), actual.getWordTime(w));
+            assertEquals(expected.getWordEndTime(w), actual.getWordEndTime(w));
+        }
+    }
+
+    @Test
+    public void rejectsWrongMagic() {
+        byte[] bytes = compiled();
+        bytes[0] = 'X';
+        assertRejected(bytes, "Not a compiled lyrics file");
+    }
+
+    @Test
+    public void rejectsWrongVersion() {
+        byte[] bytes = compiled();
+        bytes[LyricsBinaryWriter.MAGIC.length] = (byte) (LyricsBinaryWriter.VERSION + 1);
+        assertRejected(bytes, "Unsupported compiled lyrics version " + (LyricsBinaryWriter.VERSION + 1));
+    }
+
+    @Test
+    public void rejectsEveryTruncation() {
+        byte[] bytes = compiled();
+        for (int length = 0; length < bytes.length; length++) {
+            assertRejected(Arrays.copyOf(bytes, length), null);
+        }
+    }
+
+    // Any single corrupted byte either still reads as some lyrics or fails with an
+    // IOException, never with a runtime exception or a huge allocation
+    @Test
+    public void corruptBytesFailCleanly() {
+        byte[] bytes = compiled();
+        for (int i = 0; i < bytes.length; i++) {
+            for (int flip : new int[] {0x01, 0x80, 0xFF}) {
+                byte[] corrupt = bytes.clone();
+                corrupt[i] ^= flip;
+                try {
+                    LyricsBinaryReader.read(ByteBuffer.wrap(corrupt));
+                } catch (IOException expected) {
+                    // Fine
+                } catch (RuntimeException e) {
+                    throw new AssertionError("byte " + i + " ^ " + flip, e);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void rejectsCorruptHeader() {
+        byte[] bytes = compiled();
+        // The one byte line count replaced by one claiming far more lines than there are bytes
+        int header = LyricsBinaryWriter.MAGIC.length + 2;
+        byte[] corrupt = new byte[bytes.length + 3];
+        System.arraycopy(bytes, 0, corrupt, 0, header);
+        corrupt[header] = (byte) 0xFF;
+        corrupt[header + 1] = (byte) 0xFF;
+        corrupt[header + 2] = (byte) 0xFF;
+        corrupt[header + 3] = 0x07;
+        System.arraycopy(bytes, header + 1, corrupt, header + 4, bytes.length - header - 1);
+        assertRejected(corrupt, "Corrupt compiled lyrics header");
+    }
+
+    private static void assertRejected(byte[] bytes, String message) {
+        try {
+            LyricsBinaryReader.read(ByteBuffer.wrap(bytes));
+            fail("Read " + bytes.length + " bytes without an error");
+        } catch (IOException e) {
+            if (message != null) assertEquals(message, e.getMessage());
+        }
+    }
+
+    private static String dump(CompiledLyrics lyrics) {
+        return LrcParserTest.dump(lyrics.toLyricLines());
+    }
+}
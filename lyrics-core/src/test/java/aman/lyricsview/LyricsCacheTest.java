@@ -0,0 +1,107 @@
+package aman.lyricsview;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+public class LyricsCacheTest {
+
+    @Test
+    public void stringHashMatchesUtf8Bytes() {
+        String[] texts = {
+                "",
+                "[00:01.00]plain ascii",
+                "[00:01.00]é ß ñ", // 2 byte sequences
+                "[00:01.00]漢字 かな 한국어", // 3 byte sequences
+                "[00:01.00]\uD83D\uDE00 \uD834\uDD1E", // Surrogate pairs, 4 byte sequences
+                "\uD83D\uDE00", // A pair at the very end
+                "a\u07FF\u0800\uFFFF", // Edges of the 2 and 3 byte ranges
+        };
+        for (String text : texts) {
+            assertEquals(text, LyricsCache.hash(text.getBytes(StandardCharsets.UTF_8)), LyricsCache.hash(text));
+            assertEquals(text, text.getBytes(StandardCharsets.UTF_8).length, LyricsCache.utf8Length(text));
+        }
+    }
+
+    @Test
+    public void loneSurrogateDoesNotHashLikeQuestionMark() {
+        String[] lone = {"[00:01.00]a\uD800b", "[00:01.00]a\uDFFFb", "[00:01.00]a\uDC00\uD800b", "[00:01.00]a\uD800"};
+        for (String text : lone) {
+            String replaced = new String(text.getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8);
+            assertNotEquals(text, LyricsCache.hash(replaced), LyricsCache.hash(text));
+        }
+        // Hashed as the CESU-8 bytes of the surrogate
+        byte[] cesu = {'a', (byte) 0xED, (byte) 0xA0, (byte) 0x80, 'b'};
+        assertEquals(LyricsCache.hash(cesu), LyricsCache.hash("a\uD800b"));
+
+        LyricsCache cache = new LyricsCache(LyricsCache.DEFAULT_MAX_BYTES);
+        CompiledLyrics surrogate = cache.getOrParse("[00:01.00]a\uD800b");
+        CompiledLyrics question = cache.getOrParse("[00:01.00]a?b");
+        assertNotSame(surrogate, question);
+        assertEquals(0, cache.getHitCount());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedOverBudget() {
+        CompiledLyrics a = compile("[00:01.00]First song\n");
+        CompiledLyrics b = compile("[00:01.00]Second song\n");
+        CompiledLyrics c = compile("[00:01.00]Third song\n");
+        LyricsCache cache = new LyricsCache(a.estimateSizeBytes() + b.estimateSizeBytes());
+
+        cache.put(1, a);
+        cache.put(2, b);
+        assertEquals(a.estimateSizeBytes() + b.estimateSizeBytes(), cache.getSizeBytes());
+        assertSame(a, cache.get(1)); // b is now the least recently used
+        cache.put(3, c);
+
+        assertNull(cache.get(2));
+        assertSame(a, cache.get(1));
+        assertSame(c, cache.get(3));
+        assertEquals(2, cache.getEntryCount());
+        assertEquals(a.estimateSizeBytes() + c.estimateSizeBytes(), cache.getSizeBytes());
+        assertEquals(3, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.getEvictionCount());
+
+        cache.setMaxBytes(c.estimateSizeBytes());
+        assertNull(cache.get(1));
+        assertEquals(2, cache.getEvictionCount());
+        assertEquals(c.estimateSizeBytes(), cache.getSizeBytes());
+    }
+
+    @Test
+    public void replacingAnEntryKeepsTheSizeRight() {
+        CompiledLyrics a = compile("[00:01.00]First song\n");
+        CompiledLyrics b = compile("[00:01.00]Second song, a little longer\n");
+        LyricsCache cache = new LyricsCache(LyricsCache.DEFAULT_MAX_BYTES);
+        cache.put(1, a);
+        cache.put(1, b);
+        assertEquals(1, cache.getEntryCount());
+        assertEquals(b.estimateSizeBytes(), cache.getSizeBytes());
+        assertEquals(0, cache.getEvictionCount());
+    }
+
+    @Test
+    public void entryLargerThanTheBudgetIsIgnored() {
+        CompiledLyrics small = compile("[00:01.00]Short\n");
+        CompiledLyrics large = compile("[00:01.00]A much longer line that takes more room\n[00:02.00]And another\n");
+        LyricsCache cache = new LyricsCache(large.estimateSizeBytes() - 1);
+        cache.put(1, small);
+        cache.put(2, large);
+
+        assertNull(cache.get(2));
+        assertSame(small, cache.get(1));
+        assertEquals(small.estimateSizeBytes(), cache.getSizeBytes());
+        assertEquals(0, cache.getEvictionCount());
+    }
+
+    private static CompiledLyrics compile(String lrc) {
+        return CompiledLyrics.compile(LrcParser.parse((CharSequence) lrc));
+    }
+}
@@ -2,17 +2,28 @@ package aman.lyricsview;
 
 import android.content.Context;
 import android.content.res.TypedArray;
+import android.graphics.Bitmap;
 import android.graphics.BlurMaskFilter;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.LinearGradient;
 import android.graphics.Matrix;
 import android.graphics.Paint;
+import android.graphics.RectF;
 import android.graphics.Shader;
 import android.graphics.Typeface;
+import android.graphics.RecordingCanvas;
+import android.graphics.RenderNode;
+import android.os.Build;
 import android.os.Handler;
 import android.os.Looper;
+import android.os.Trace;
 import android.util.AttributeSet;
+import android.util.Log;
+import android.util.LruCache;
+import android.util.SparseArray;
+import android.view.Choreographer;
+import android.view.Display;
 import android.view.GestureDetector;
 import android.view.MotionEvent;
 import android.view.VelocityTracker;
@@ -21,47 +32,709 @@ import android.view.ViewConfiguration;
 import android.widget.OverScroller;
 
 import androidx.annotation.Nullable;
+import androidx.annotation.RequiresApi;
 
-import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
-import java.nio.charset.StandardCharsets;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
+import java.util.Objects;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class LyricsView extends View {
 
+    private static final String TAG = "LyricsView";
+
     public interface SeekListener {
         void onSeek(long timeMs);
     }
 
+    // All callbacks arrive on the main thread. Durations are System.nanoTime() deltas.
+    public interface MetricsListener {
+        // jankCount is the running number of frames whose draw alone overran the frame budget
+        void onFrameDrawn(long drawNanos, int visibleLines, int jankCount);
+        void onLayout(long wrapNanos, int wrappedLineCount);
+        // Lyrics loaded off the main thread; bytes is the UTF-8 size for Strings
+        void onParsed(long parseNanos, long bytes, int lineCount);
+    }
+
     private static class WrappedLine {
-        LyricLine parentLine;
-        List<LyricWord> words;
+        int line;      // Index into lyrics
+        int firstWord; // Words [firstWord, endWord) of the line
+        int endWord;
         float y;
         long nextStartTime = -1;
         float xOffset = 0;
+        LineDisplayList displayList; // Only while recently visible, API 29+
+        float bgMaskScale; // Scale the cached background mask was rendered at
+
+        WrappedLine(int line, int firstWord, int endWord) {
+            this.line = line;
+            this.firstWord = firstWord;
+            this.endWord = endWord;
+        }
+    }
+
+    // What a stable line was recorded with, see drawStableLine
+    private static final int CONTENT_NONE = 0;
+    private static final int CONTENT_DEFAULT = 1;
+    private static final int CONTENT_ACTIVE = 2;
+    private static final int CONTENT_ACTIVE_V2 = 3;
+
+    // A wrapped line that is not being sung, recorded once and replayed with only the
+    // canvas transform and a node alpha until its content changes
+    @RequiresApi(Build.VERSION_CODES.Q)
+    private static final class LineDisplayList {
+        final RenderNode node = new RenderNode("LyricsLine");
+        int content = CONTENT_NONE;
+
+        LineDisplayList() {
+            // Glyphs of one line don't overlap, so alpha can go straight to each draw
+            node.setHasOverlappingRendering(false);
+        }
+    }
+
+    // Wrapped lines and measurements for one lyrics snapshot at one width. Built on the
+    // layout thread and only read after it has been handed to the UI thread.
+    private static final class LineLayout {
+        final CompiledLyrics lyrics;
+        final LyricTimeline timeline;
+        final List<WrappedLine> wrappedLines = new ArrayList<>();
+        float[] wrappedLineY = new float[0];
+        // Shared with the width cache. Never written, except for the lines of a virtual layout
+        // that have not been measured yet, see VirtualLayout.
+        float[] wordWidths = new float[0];
+        @Nullable VirtualLayout virtual; // Set instead of the wrapped lines for long documents
+        // Indexed by line, NaN when a line has no wrapped lines
+        float[] lineCenterY = new float[0];
+        float[] lineScrollY = new float[0];
+        float totalContentHeight = 0;
+        // What it was requested for, so a streamed batch can tell whether it can extend it
+        int viewWidth;
+        int paintVersion;
+
+        LineLayout(CompiledLyrics lyrics, LyricTimeline timeline) {
+            this.lyrics = lyrics;
+            this.timeline = timeline;
+        }
+    }
+
+    // Everything a word width depends on. Lyrics are compared by identity; the parse cache
+    // hands out the same instance for the same text. A key holds on to its lyrics, so the
+    // cache only keeps the lyrics being shown, see retainWordWidths.
+    private static final class WidthsKey {
+        private final CompiledLyrics lyrics;
+        @Nullable private final Typeface typeface;
+        private final float textSize;
+        private final float textScaleX;
+        private final boolean fakeBold;
+
+        WidthsKey(CompiledLyrics lyrics, Paint paint) {
+            this.lyrics = lyrics;
+            this.typeface = paint.getTypeface();
+            this.textSize = paint.getTextSize();
+            this.textScaleX = paint.getTextScaleX();
+            this.fakeBold = paint.isFakeBoldText();
+        }
 
-        WrappedLine(LyricLine parentLine, List<LyricWord> words) {
-            this.parentLine = parentLine;
-            this.words = words;
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof WidthsKey)) return false;
+            WidthsKey other = (WidthsKey) o;
+            return lyrics == other.lyrics && Objects.equals(typeface, other.typeface)
+                    && textSize == other.textSize && textScaleX == other.textScaleX && fakeBold == other.fakeBold;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(System.identityHashCode(lyrics), typeface, textSize, textScaleX, fakeBold);
+        }
+    }
+
+    // Copy of everything wrapping depends on, taken on the UI thread. Paint is not thread
+    // safe, so measuring uses a private copy of the active paint.
+    private static final class LayoutSpec {
+        private final Paint paint;
+        private final float padding;
+        private final float spacingBetweenWrappedLines;
+        private final float spacingBetweenLyrics;
+        private final float textHeight;
+        private final int textGravity;
+        private final LruCache<WidthsKey, float[]> wordWidthCache;
+        // Where a virtual layout wraps its first window: the line at the top of the viewport
+        // in the layout on screen, and the view height
+        private final int windowLine;
+        private final int windowHeight;
+
+        LayoutSpec(LyricsView view, int viewHeight) {
+            paint = new Paint(view.paintActive);
+            windowLine = view.lineAtScrollY();
+            windowHeight = viewHeight;
+            wordWidthCache = view.wordWidthCache;
+            padding = view.padding;
+            spacingBetweenWrappedLines = view.spacingBetweenWrappedLines;
+            spacingBetweenLyrics = view.spacingBetweenLyrics;
+            textHeight = view.textHeight;
+            textGravity = view.textGravity;
+        }
+
+        LineLayout build(CompiledLyrics lyrics, LyricTimeline timeline, int viewWidth) {
+            LineLayout layout = new LineLayout(lyrics, timeline);
+            if (viewWidth - (padding * 2) <= 0) return layout;
+
+            int lineCount = lyrics.getLineCount();
+            if (lineCount >= VIRTUAL_LAYOUT_MIN_LINES) {
+                layout.virtual = new VirtualLayout(this, lyrics, viewWidth);
+                layout.wordWidths = layout.virtual.wordWidths;
+                layout.wrappedLines.addAll(layout.virtual.wrappedLines);
+                layout.wrappedLineY = layout.virtual.wrappedLineY;
+                layout.lineCenterY = layout.virtual.lineCenterY;
+                layout.totalContentHeight = layout.virtual.lineTop[lineCount];
+                return layout;
+            }
+
+            float[] wordWidths = measureWords(lyrics);
+            layout.wordWidths = wordWidths;
+            float[] lineCenterY = new float[lineCount];
+            List<WrappedLine> wrappedLines = layout.wrappedLines;
+            layout.totalContentHeight = wrapLines(lyrics, viewWidth, wordWidths, 0, lineCount, 0, -1, lineCenterY, wrappedLines);
+
+            int wrappedCount = wrappedLines.size();
+            layout.wrappedLineY = new float[wrappedCount];
+            for (int w = 0; w < wrappedCount; w++) layout.wrappedLineY[w] = wrappedLines.get(w).y;
+
+            layout.lineCenterY = lineCenterY;
+            layout.lineScrollY = new float[lineCount];
+            LyricTiming.scrollTargets(timeline, lineCenterY, layout.lineScrollY);
+            return layout;
+        }
+
+        // Layout of lyrics whose first stableLines lines are unchanged from base.lyrics, e.g. the
+        // next snapshot of a streamed file. Wrapped lines, widths and targets of those lines are
+        // kept and only the lines after them are measured and wrapped.
+        LineLayout extend(LineLayout base, CompiledLyrics lyrics, LyricTimeline timeline, int viewWidth, int stableLines) {
+            int lineCount = lyrics.getLineCount();
+            if (lineCount >= VIRTUAL_LAYOUT_MIN_LINES || viewWidth - (padding * 2) <= 0) return build(lyrics, timeline, viewWidth);
+            // A wrapped line knows when the next line starts, so the last stable one is wrapped again
+            int fromLine = Math.max(0, Math.min(stableLines, base.lyrics.getLineCount()) - 1);
+            LineLayout layout = new LineLayout(lyrics, timeline);
+
+            float[] wordWidths = Arrays.copyOf(base.wordWidths, lyrics.getWordCount());
+            measureLines(lyrics, fromLine, lineCount, wordWidths);
+            layout.wordWidths = wordWidths;
+
+            List<WrappedLine> wrappedLines = layout.wrappedLines;
+            int kept = base.wrappedLines.size();
+            while (kept > 0 && base.wrappedLines.get(kept - 1).line >= fromLine) kept--;
+            wrappedLines.addAll(base.wrappedLines.subList(0, kept));
+            float currentY = 0;
+            int previousParent = -1;
+            if (kept > 0) {
+                WrappedLine last = wrappedLines.get(kept - 1);
+                previousParent = last.line;
+                currentY = last.y + (lyrics.isBackground(last.line) ? textHeight * BG_SCALE_SIZE : textHeight);
+            }
+
+            float[] lineCenterY = Arrays.copyOf(base.lineCenterY, lineCount);
+            layout.totalContentHeight = wrapLines(lyrics, viewWidth, wordWidths, fromLine, lineCount, currentY, previousParent, lineCenterY, wrappedLines);
+
+            int wrappedCount = wrappedLines.size();
+            layout.wrappedLineY = Arrays.copyOf(base.wrappedLineY, wrappedCount);
+            for (int w = kept; w < wrappedCount; w++) layout.wrappedLineY[w] = wrappedLines.get(w).y;
+
+            // A target only depends on the lines up to it
+            layout.lineCenterY = lineCenterY;
+            layout.lineScrollY = Arrays.copyOf(base.lineScrollY, lineCount);
+            int[] sounding = new int[8];
+            for (int line = fromLine; line < lineCount; line++) {
+                layout.lineScrollY[line] = LyricTiming.scrollTarget(timeline, lineCenterY, line, sounding);
+            }
+            return layout;
+        }
+
+        // Wraps lines [fromLine, toLine) from currentY on, after previousParent (the last line
+        // with words before fromLine, or -1). Fills lineCenterY for those lines, if given, and
+        // returns the y below the last one.
+        private float wrapLines(CompiledLyrics lyrics, int viewWidth, float[] wordWidths, int fromLine, int toLine,
+                                float currentY, int previousParent, @Nullable float[] lineCenterY, List<WrappedLine> wrappedLines) {
+            float maxAllowedWidth = viewWidth - (padding * 2);
+            char[] text = lyrics.getText();
+
+            for (int lineIdx = fromLine; lineIdx < toLine; lineIdx++) {
+                boolean isBackground = lyrics.isBackground(lineIdx);
+                long nextStartTime = -1;
+                if (lineIdx + 1 < lyrics.getLineCount()) nextStartTime = lyrics.getLineStartTime(lineIdx + 1);
+
+                int wordEnd = lyrics.getWordEnd(lineIdx);
+                int currentLineStart = lyrics.getFirstWord(lineIdx);
+                float currentLineWidth = 0;
+                float parentStartY = -1;
+                float parentLastLineY = -1;
+                float effectiveMeasureScale = isBackground ? (BG_SCALE_SIZE * BG_HORIZONTAL_STRETCH) : 1.0f;
+
+                int i = currentLineStart;
+                while (i < wordEnd) {
+                    int clusterStart = i;
+                    float clusterWidth = 0;
+
+                    // A cluster is a run of word pieces up to one that ends in a break character
+                    do {
+                        int textStart = lyrics.getWordTextStart(i);
+                        int textLength = lyrics.getWordTextLength(i);
+                        clusterWidth += wordWidths[i] * effectiveMeasureScale;
+                        i++;
+                        if (textLength > 0) {
+                            char last = text[textStart + textLength - 1];
+                            if (last == ' ' || last == '\u3000' || last == '-') break;
+                        }
+                    } while (i < wordEnd);
+
+                    if (currentLineWidth + clusterWidth > maxAllowedWidth && clusterStart > currentLineStart) {
+                        addWrappedLine(lyrics, viewWidth, lineIdx, currentLineStart, clusterStart, nextStartTime, currentLineWidth, previousParent, currentY, wrappedLines);
+                    
+                        if (parentStartY == -1) parentStartY = currentY + getSpacing(lyrics, lineIdx, previousParent);
+                        currentY += getSpacing(lyrics, lineIdx, previousParent);
+                        parentLastLineY = currentY;
+                        currentY += (isBackground ? textHeight * BG_SCALE_SIZE : textHeight);
+
+                        previousParent = lineIdx;
+                        currentLineStart = clusterStart;
+                        currentLineWidth = 0;
+                    }
+                    currentLineWidth += clusterWidth;
+                }
+
+                if (i > currentLineStart) {
+                    addWrappedLine(lyrics, viewWidth, lineIdx, currentLineStart, i, nextStartTime, currentLineWidth, previousParent, currentY, wrappedLines);
+
+                    if (parentStartY == -1) parentStartY = currentY + getSpacing(lyrics, lineIdx, previousParent);
+                    currentY += getSpacing(lyrics, lineIdx, previousParent);
+                    parentLastLineY = currentY;
+                    currentY += (isBackground ? textHeight * BG_SCALE_SIZE : textHeight);
+                    previousParent = lineIdx;
+                }
+
+                if (lineCenterY == null) continue;
+                if (parentStartY != -1 && parentLastLineY != -1) {
+                    lineCenterY[lineIdx] = (parentStartY + parentLastLineY) / 2f;
+                } else {
+                    lineCenterY[lineIdx] = Float.NaN;
+                }
+            }
+            return currentY;
+        }
+
+        // Widths of all words, measured a line at a time and kept per lyrics and font, so a
+        // width change only breaks the lines again and a font seen before costs nothing
+        private float[] measureWords(CompiledLyrics lyrics) {
+            WidthsKey key = new WidthsKey(lyrics, paint);
+            float[] wordWidths = wordWidthCache.get(key);
+            if (wordWidths != null) return wordWidths;
+
+            wordWidths = new float[lyrics.getWordCount()];
+            measureLines(lyrics, 0, lyrics.getLineCount(), wordWidths);
+            // The lyrics may have changed again since this layout was requested
+            retainWordWidths(wordWidthCache, lyrics);
+            wordWidthCache.put(key, wordWidths);
+            return wordWidths;
+        }
+
+        // Word widths of lines [fromLine, toLine) into out
+        private void measureLines(CompiledLyrics lyrics, int fromLine, int toLine, float[] out) {
+            char[] text = lyrics.getText();
+            float[] charWidths = new float[64];
+            for (int line = fromLine; line < toLine; line++) {
+                int firstWord = lyrics.getFirstWord(line);
+                int wordEnd = lyrics.getWordEnd(line);
+                if (firstWord == wordEnd) continue;
+                // The words of a line are contiguous in the text, so one call shapes them all
+                int lineStart = lyrics.getWordTextStart(firstWord);
+                int lineLength = lyrics.getWordTextStart(wordEnd - 1) + lyrics.getWordTextLength(wordEnd - 1) - lineStart;
+                if (lineLength == 0) {
+                    // Written all the same, a virtual layout tells measured lines by their widths
+                    Arrays.fill(out, firstWord, wordEnd, 0);
+                    continue;
+                }
+                if (charWidths.length < lineLength) charWidths = new float[Math.max(lineLength, charWidths.length * 2)];
+                paint.getTextWidths(text, lineStart, lineLength, charWidths);
+
+                int c = 0;
+                for (int w = firstWord; w < wordEnd; w++) {
+                    float width = 0;
+                    for (int end = c + lyrics.getWordTextLength(w); c < end; c++) width += charWidths[c];
+                    out[w] = width;
+                }
+            }
+        }
+
+        private float getSpacing(CompiledLyrics lyrics, int line, int previousParent) {
+            if (previousParent == -1) return 0;
+            else if (lyrics.isBackground(line)) return 0;
+            else if (lyrics.isBackground(previousParent)) return 0;
+            else return (previousParent == line) ? spacingBetweenWrappedLines : spacingBetweenLyrics;
+        }
+
+        private void addWrappedLine(CompiledLyrics lyrics, int viewWidth, int line, int firstWord, int endWord, long nextStartTime, float lineWidth, int previousParent, float currentY, List<WrappedLine> wrappedLines) {
+            WrappedLine wl = new WrappedLine(line, firstWord, endWord);
+
+            if (lyrics.isBackground(line)) {
+                wl.xOffset = (viewWidth - lineWidth) / 2f - padding;
+            } else {
+                if (textGravity == 1) {
+                    // Start (Left) Alignment: offset is 0
+                    wl.xOffset = 0;
+                } else {
+                    // Center Alignment
+                    wl.xOffset = (viewWidth - lineWidth) / 2f - padding;
+                }
+            }
+
+            float spacing = getSpacing(lyrics, line, previousParent);
+            wl.y = currentY + spacing;
+            wl.nextStartTime = nextStartTime;
+            wrappedLines.add(wl);
+        }
+    }
+
+    // Layout of a long document where only a window of lines around the viewport is wrapped.
+    // Every other line has an estimated number of rows, replaced by the exact count once the
+    // line has been wrapped, so positions settle as lines come into view. Built on the layout
+    // thread with a first window, then positions and the window belong to the UI thread.
+    // Later windows are measured and wrapped on the layout thread and applied on the UI thread.
+    private static final class VirtualLayout {
+        // Lines measured up front to estimate the average character width
+        private static final int SAMPLE_LINES = 200;
+
+        private final LayoutSpec spec;
+        private final CompiledLyrics lyrics;
+        private final int viewWidth;
+        // Widths of all words, NaN until their line is measured. Kept in the width cache, so
+        // another width measures nothing twice. Only the layout thread writes, and only lines
+        // no window has wrapped yet; the UI thread only reads lines of applied windows.
+        final float[] wordWidths;
+        // Rows per line, estimated until the line is wrapped, 0 for lines without words
+        private final int[] rows;
+        private final int[] previousParent; // Last line with words before each line, or -1
+        final float[] lineTop; // y above each line; lineTop[lineCount] is the content height
+        final float[] lineCenterY;
+
+        // Lines [windowFirst, windowEnd) are wrapped
+        int windowFirst, windowEnd;
+        List<WrappedLine> wrappedLines = new ArrayList<>();
+        float[] wrappedLineY = new float[0];
+        boolean windowRequested; // The next window is being wrapped on the layout thread
+
+        VirtualLayout(LayoutSpec spec, CompiledLyrics lyrics, int viewWidth) {
+            this.spec = spec;
+            this.lyrics = lyrics;
+            this.viewWidth = viewWidth;
+            int lineCount = lyrics.getLineCount();
+            rows = new int[lineCount];
+            previousParent = new int[lineCount];
+            lineTop = new float[lineCount + 1];
+            lineCenterY = new float[lineCount];
+
+            WidthsKey key = new WidthsKey(lyrics, spec.paint);
+            float[] cached = spec.wordWidthCache.get(key);
+            if (cached == null) {
+                cached = new float[lyrics.getWordCount()];
+                Arrays.fill(cached, Float.NaN);
+                retainWordWidths(spec.wordWidthCache, lyrics);
+                spec.wordWidthCache.put(key, cached);
+            }
+            wordWidths = cached;
+
+            float maxAllowedWidth = viewWidth - (spec.padding * 2);
+            float charWidth = averageCharWidth();
+            int previous = -1;
+            for (int line = 0; line < lineCount; line++) {
+                previousParent[line] = previous;
+                int firstWord = lyrics.getFirstWord(line);
+                int wordEnd = lyrics.getWordEnd(line);
+                if (firstWord == wordEnd) continue;
+
+                int chars = lyrics.getWordTextStart(wordEnd - 1) + lyrics.getWordTextLength(wordEnd - 1) - lyrics.getWordTextStart(firstWord);
+                float scale = lyrics.isBackground(line) ? (BG_SCALE_SIZE * BG_HORIZONTAL_STRETCH) : 1.0f;
+                rows[line] = Math.max(1, (int) Math.ceil(chars * charWidth * scale / maxAllowedWidth));
+                previous = line;
+            }
+            updatePositions(0, lineCount);
+
+            // A viewport of margin on both sides, like the windows that follow
+            float top = lineTop[Math.min(spec.windowLine, lineCount - 1)];
+            applyWindow(wrap(lineAt(top - spec.windowHeight), lineAt(top + spec.windowHeight * 2) + 1));
+        }
+
+        private float averageCharWidth() {
+            int sampleEnd = Math.min(SAMPLE_LINES, lyrics.getLineCount());
+            measureMissing(0, sampleEnd);
+
+            int wordEnd = lyrics.getWordEnd(sampleEnd - 1);
+            float totalWidth = 0;
+            for (int w = 0; w < wordEnd; w++) totalWidth += wordWidths[w];
+            int chars = lyrics.getWordTextStart(wordEnd);
+            if (chars == 0 || totalWidth == 0) return spec.paint.getTextSize() / 2f;
+            return totalWidth / chars;
+        }
+
+        // Measures the lines in [fromLine, toLine) that no earlier window has, a run at a time
+        private void measureMissing(int fromLine, int toLine) {
+            int line = fromLine;
+            while (line < toLine) {
+                if (isMeasured(line)) {
+                    line++;
+                    continue;
+                }
+                int runEnd = line + 1;
+                while (runEnd < toLine && !isMeasured(runEnd)) runEnd++;
+                spec.measureLines(lyrics, line, runEnd, wordWidths);
+                line = runEnd;
+            }
+        }
+
+        private boolean isMeasured(int line) {
+            int firstWord = lyrics.getFirstWord(line);
+            return firstWord == lyrics.getWordEnd(line) || !Float.isNaN(wordWidths[firstWord]);
+        }
+
+        // Same arithmetic as wrapLines, with the row counts of lines [fromLine, toLine) taken as given
+        private void updatePositions(int fromLine, int toLine) {
+            for (int line = fromLine; line < toLine; line++) {
+                float top = lineTop[line];
+                if (rows[line] == 0) {
+                    lineCenterY[line] = Float.NaN;
+                    lineTop[line + 1] = top;
+                    continue;
+                }
+                float rowHeight = lyrics.isBackground(line) ? spec.textHeight * BG_SCALE_SIZE : spec.textHeight;
+                float rowStep = spec.getSpacing(lyrics, line, line) + rowHeight;
+                float firstRowY = top + spec.getSpacing(lyrics, line, previousParent[line]);
+                float lastRowY = firstRowY + (rows[line] - 1) * rowStep;
+                lineCenterY[line] = (firstRowY + lastRowY) / 2f;
+                lineTop[line + 1] = lastRowY + rowHeight;
+            }
+        }
+
+        // Line whose range contains y, clamped to the document
+        int lineAt(float y) {
+            int low = 0, high = rows.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (lineTop[mid + 1] <= y) low = mid + 1;
+                else high = mid;
+            }
+            return Math.min(low, rows.length - 1);
+        }
+
+        boolean covers(float top, float bottom) {
+            if (windowEnd == 0) return false;
+            return (windowFirst == 0 || lineTop[windowFirst] <= top)
+                    && (windowEnd == rows.length || lineTop[windowEnd] >= bottom);
+        }
+
+        // Layout thread. Wraps lines [first, end) with y relative to the top of first, which
+        // the lines above can still move until the window is applied.
+        WrappedWindow wrap(int first, int end) {
+            measureMissing(first, end);
+            List<WrappedLine> lines = new ArrayList<>();
+            spec.wrapLines(lyrics, viewWidth, wordWidths, first, end, 0, previousParent[first], null, lines);
+            return new WrappedWindow(first, end, lines);
+        }
+
+        // UI thread. Makes window the wrapped one and returns the wrapped lines it replaced.
+        // Lines both windows wrap come out the same, so those keep their WrappedLine and with
+        // it whatever was cached for drawing it. Only lines from the first one whose rows
+        // differ from before are positioned again, and the lines below simply move along.
+        List<WrappedLine> applyWindow(WrappedWindow window) {
+            int first = window.first, end = window.end;
+            List<WrappedLine> lines = window.lines;
+            float top = lineTop[first];
+
+            int changedFrom = end;
+            for (int line = first, w = 0; line < end; line++) {
+                int count = 0;
+                for (; w < lines.size() && lines.get(w).line == line; w++) count++;
+                if (count != rows[line] && changedFrom == end) changedFrom = line;
+                rows[line] = count;
+            }
+            if (changedFrom < end) {
+                float oldEndTop = lineTop[end];
+                updatePositions(changedFrom, end);
+                float shift = lineTop[end] - oldEndTop;
+                if (shift != 0) {
+                    for (int line = end; line < rows.length; line++) {
+                        lineTop[line + 1] += shift;
+                        lineCenterY[line] += shift;
+                    }
+                }
+            }
+
+            List<WrappedLine> replaced = new ArrayList<>();
+            List<WrappedLine> old = wrappedLines;
+            int o = 0;
+            for (int w = 0; w < lines.size(); w++) {
+                WrappedLine wl = lines.get(w);
+                wl.y += top;
+                // Both lists are ordered by line and then by word
+                while (o < old.size() && (old.get(o).line < wl.line
+                        || (old.get(o).line == wl.line && old.get(o).firstWord < wl.firstWord))) {
+                    replaced.add(old.get(o++));
+                }
+                if (o < old.size() && old.get(o).line == wl.line && old.get(o).firstWord == wl.firstWord) {
+                    WrappedLine kept = old.get(o++);
+                    kept.y = wl.y;
+                    lines.set(w, kept);
+                }
+            }
+            while (o < old.size()) replaced.add(old.get(o++));
+
+            windowFirst = first;
+            windowEnd = end;
+            wrappedLines = lines;
+            wrappedLineY = new float[lines.size()];
+            for (int w = 0; w < wrappedLineY.length; w++) wrappedLineY[w] = lines.get(w).y;
+            return replaced;
+        }
+    }
+
+    // Lines [first, end) of a virtual layout, wrapped on the layout thread
+    private static final class WrappedWindow {
+        final int first, end;
+        final List<WrappedLine> lines;
+
+        WrappedWindow(int first, int end, List<WrappedLine> lines) {
+            this.first = first;
+            this.end = end;
+            this.lines = lines;
         }
     }
 
     // DATA
-    private List<LyricLine> lyrics = new ArrayList<>();
+    private CompiledLyrics lyrics = CompiledLyrics.EMPTY;
+    private LyricTimeline timeline = new LyricTimeline(CompiledLyrics.EMPTY);
+    private LyricTimeline.Cursor timelineCursor = timeline.newCursor();
+    // Lines sung at currentTime, in index order, refreshed every frame
+    private int[] soundingLines = new int[8];
     private List<WrappedLine> wrappedLines = new ArrayList<>();
-    private Map<LyricLine, Float> lineCenterYMap = new HashMap<>();
-    private Map<LyricLine, Float> lineScrollYMap = new HashMap<>();
+    // Baseline of each wrapped line, non-decreasing, for binary searches by y
+    private float[] wrappedLineY = new float[0];
+    private float[] wordWidths = new float[0];
+    // Only wraps the lines around the viewport, see VirtualLayout
+    @Nullable private VirtualLayout virtualLayout;
+    private final int[] scrollScratch = new int[8];
+    // Indexed by line, NaN when a line has no wrapped lines. Empty until laid out.
+    private float[] lineCenterY = new float[0];
+    private float[] lineScrollY = new float[0];
 
     private long currentTime = 0;
 
+    // PLAYBACK CLOCK
+    // After setPlaybackState the time runs on its own, extrapolated from the frame times
+    private boolean clockEnabled = false;
+    private boolean clockPlaying = false;
+    private long clockPositionMs = 0;
+    private long clockAnchorNanos = 0;
+    private float clockSpeed = 1f;
+    private boolean clockFramePosted = false;
+    private final Choreographer.FrameCallback clockFrameCallback = this::onClockFrame;
+
+    // REDRAW SCHEDULING
+    // The last frame stays valid for times in [drawnTimeMs, redrawAtMs)
+    private long drawnTimeMs = Long.MIN_VALUE;
+    private long redrawAtMs = Long.MIN_VALUE;
+    private long nextChangeMs;
+    // Content y range that changes within DIRTY_HORIZON_MS of the last frame, NaN = everything.
+    // Hardware rendering redraws the whole view whatever rect is invalidated, so the range is
+    // only tracked while drawing in software.
+    private static final long DIRTY_HORIZON_MS = 250;
+    private boolean trackDirty;
+    private float dirtyTop, dirtyBottom;
+    private float candidateTop, candidateBottom;
+
+    // LAYER POLICY
+    // A hardware layer only pays off while the lyrics are static and merely recomposited
+    private static final long LAYER_MIN_STATIC_MS = 1000;
+    private static final int LAYER_MAX_ANIMATED_FRAMES = 3;
+    private int animatedFrames = 0;
+    private int wantedLayerType = LAYER_TYPE_NONE;
+    private final Runnable layerTypeUpdate = () -> {
+        if (getLayerType() != wantedLayerType) setLayerType(wantedLayerType, null);
+    };
+
     // THREADING
     private final Handler mainHandler = new Handler(Looper.getMainLooper());
     private final ExecutorService parsingExecutor = Executors.newSingleThreadExecutor();
+    private int lyricsGeneration = 0; // Bumped on every new lyrics source so stale async results are dropped
+
+    // LAYOUT
+    // Shared by all views; layouts are short and a view only ever waits for its newest one
+    private static final ExecutorService LAYOUT_EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "LyricsView-layout");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // Bumped for every requested layout, results of older requests are dropped
+    private final AtomicInteger layoutGeneration = new AtomicInteger();
+    // Lyrics to show once laid out; differs from lyrics while a streamed batch is wrapped
+    private CompiledLyrics layoutTarget = CompiledLyrics.EMPTY;
+    @Nullable private CompiledLyrics requestedLyrics;
+    // Leading lines layoutTarget shares unchanged with the lyrics shown
+    private int layoutStableLines = 0;
+    // The layout on screen, which the next streamed batch is laid out on top of
+    @Nullable private LineLayout shownLayout;
+    private int requestedWidth;
+    private int requestedPaintVersion;
+    private int paintVersion = 0; // Bumped whenever the text paint changes
+
+    // Word widths of the lyrics being shown, per font, filled on the layout thread
+    private static final int WORD_WIDTH_CACHE_BYTES = 1024 * 1024;
+    private final LruCache<WidthsKey, float[]> wordWidthCache = new LruCache<WidthsKey, float[]>(WORD_WIDTH_CACHE_BYTES) {
+        @Override
+        protected int sizeOf(WidthsKey key, float[] value) {
+            return Math.max(1, value.length * 4);
+        }
+    };
+
+    // Drops the widths of any other lyrics, so replaced lyrics and streamed snapshots are not
+    // kept alive by their keys. LruCache is synchronized, so either thread may call this.
+    private static void retainWordWidths(LruCache<WidthsKey, float[]> cache, CompiledLyrics lyrics) {
+        for (WidthsKey key : cache.snapshot().keySet()) {
+            if (key.lyrics != lyrics) cache.remove(key);
+        }
+    }
+
+    // Wrapped lines holding a display list, trimmed to the ones near the viewport every frame
+    private final List<WrappedLine> recordedLines = new ArrayList<>();
+
+    // Blurred [bg:] lines, rendered once as ALPHA_8 coverage masks and tinted on draw, so the
+    // mask filter runs once per line instead of for every word on every frame. Keyed by
+    // wrapped line, which is per layout and therefore per typeface and text size.
+    private static final int BG_MASK_CACHE_BYTES = 4 * 1024 * 1024;
+    private final LruCache<WrappedLine, Bitmap> bgMaskCache = new LruCache<WrappedLine, Bitmap>(BG_MASK_CACHE_BYTES) {
+        @Override
+        protected int sizeOf(WrappedLine key, Bitmap value) {
+            return value.getAllocationByteCount();
+        }
+    };
+    private final Paint paintBgMask = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private final RectF bgMaskBounds = new RectF();
+
+    // Glow of each filling word, blurred once into an ALPHA_8 sprite and faded through the
+    // paint alpha, instead of a new shadow layer for every word on every frame. Keyed by
+    // word index, which like the wrapped lines only holds until the next layout, in a
+    // SparseArray so the lookup on every frame doesn't box it.
+    private static final int GLOW_SPRITE_CACHE_BYTES = 2 * 1024 * 1024;
+    private final SparseArray<Bitmap> glowSprites = new SparseArray<>();
+    private int glowSpriteBytes = 0;
+    private final Paint paintGlow = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private final RectF glowBounds = new RectF();
+    private BlurMaskFilter glowBlurFilter;
 
     // PAINTS
     private Paint paintActive, paintDefault, paintPast;
@@ -74,7 +747,6 @@ public class LyricsView extends View {
     private Paint paintFillBG, paintBloomBG;
     private Paint paintFillV2BG, paintBloomV2BG;
 
-    private Paint paintFps;
     private LinearGradient masterGradient;
     private LinearGradient masterGradientV2;
     private Matrix shaderMatrix = new Matrix();
@@ -104,10 +776,19 @@ public class LyricsView extends View {
     private static final float INACTIVE_SCALE = 0.9f;
     private static final float BG_SCALE_SIZE = 0.85f;
     private static final float BG_HORIZONTAL_STRETCH = 1.25f;
+    // Documents with at least this many lines get a VirtualLayout
+    private static final int VIRTUAL_LAYOUT_MIN_LINES = 2000;
+    // Extra touch slop above and below a wrapped line
+    private static final float TAP_PADDING = 30f;
+    // Blur radius of the word glow, and how far the glow reaches beyond the glyphs
+    private static final float GLOW_RADIUS = 25f;
+    private static final float GLOW_PADDING = GLOW_RADIUS * 2;
 
     // SCROLLING & GESTURES
     private float targetScrollY = 0;
     private float currentScrollY = 0;
+    // Added to the scroller position, for content that moved while flinging
+    private float flingOffsetY = 0;
     private float minScrollY = 0;
     private float maxScrollY = 0;
 
@@ -123,16 +804,16 @@ public class LyricsView extends View {
     private SeekListener seekListener;
     private Runnable resumeAutoScrollRunnable;
     private static final long AUTO_SCROLL_RESUME_DELAY = 2500;
-    private static final long SCROLL_ANTICIPATION_MS = 600;
-    private static final long DECAY_DURATION_MS = 400;
 
     private float textHeight;
+    private final Paint.FontMetrics activeFontMetrics = new Paint.FontMetrics();
     private float totalContentHeight = 0;
 
-    // DEBUG FPS
-    private long lastFpsTime = 0;
-    private int frameCount = 0;
-    private int currentFps = 0;
+    // METRICS
+    private static final long DEFAULT_FRAME_BUDGET_NANOS = 1_000_000_000L / 60;
+    private MetricsListener metricsListener;
+    private long frameBudgetNanos = DEFAULT_FRAME_BUDGET_NANOS;
+    private int jankCount = 0;
 
     private int currentFontIndex = 0;
     private static final Typeface[] FONTS = {
@@ -219,6 +900,7 @@ public class LyricsView extends View {
         } else {
             bgBlurFilter = null;
         }
+        glowBlurFilter = new BlurMaskFilter(GLOW_RADIUS, BlurMaskFilter.Blur.NORMAL);
 
         // 3. Initialize Paints
         paintActive = new Paint(Paint.ANTI_ALIAS_FLAG);
@@ -243,7 +925,6 @@ public class LyricsView extends View {
         paintBloom = new Paint(Paint.ANTI_ALIAS_FLAG);
         paintBloom.setTextSize(layoutTextSize);
         paintBloom.setFakeBoldText(true);
-        paintBloom.setShadowLayer(25, 0, 0, colorActive);
 
         paintFillV2 = new Paint(Paint.ANTI_ALIAS_FLAG);
         paintFillV2.setTextSize(layoutTextSize);
@@ -252,7 +933,6 @@ public class LyricsView extends View {
         paintBloomV2 = new Paint(Paint.ANTI_ALIAS_FLAG);
         paintBloomV2.setTextSize(layoutTextSize);
         paintBloomV2.setFakeBoldText(true);
-        paintBloomV2.setShadowLayer(25, 0, 0, colorSecondaryVocal);
 
         paintEmpty = new Paint(Paint.ANTI_ALIAS_FLAG);
         paintEmpty.setColor(emptyColor);
@@ -285,11 +965,6 @@ public class LyricsView extends View {
         paintBloomV2BG.setMaskFilter(bgBlurFilter);
         paintBloomV2BG.setTextScaleX(BG_HORIZONTAL_STRETCH);
 
-        paintFps = new Paint(Paint.ANTI_ALIAS_FLAG);
-        paintFps.setColor(Color.GREEN);
-        paintFps.setTextSize(18 * density);
-        paintFps.setFakeBoldText(true);
-        paintFps.setTextAlign(Paint.Align.RIGHT);
 
         updateTextHeight();
 
@@ -310,19 +985,27 @@ public class LyricsView extends View {
                 return handleTap(e.getY());
             }
         });
-
-        setLayerType(LAYER_TYPE_HARDWARE, null);
     }
 
     private void updateTextHeight() {
-        Paint.FontMetrics fm = paintActive.getFontMetrics();
-        textHeight = fm.descent - fm.ascent;
+        paintActive.getFontMetrics(activeFontMetrics);
+        textHeight = activeFontMetrics.descent - activeFontMetrics.ascent;
     }
 
     public void setSeekListener(SeekListener listener) {
         this.seekListener = listener;
     }
 
+    public void setMetricsListener(@Nullable MetricsListener listener) {
+        this.metricsListener = listener;
+    }
+
+    private void reportParsed(final long parseNanos, final long bytes, final int lineCount) {
+        mainHandler.post(() -> {
+            if (metricsListener != null) metricsListener.onParsed(parseNanos, bytes, lineCount);
+        });
+    }
+
     public String cycleFont() {
         currentFontIndex = (currentFontIndex + 1) % FONTS.length;
         Typeface tf = Typeface.create(FONTS[currentFontIndex], Typeface.BOLD);
@@ -345,6 +1028,7 @@ public class LyricsView extends View {
         paintBloomV2BG.setTypeface(tf); paintBloomV2BG.setTextSize(layoutTextSize);
 
         updateTextHeight();
+        paintVersion++;
         requestLayout();
         invalidate();
         return FONT_NAMES[currentFontIndex];
@@ -355,20 +1039,35 @@ public class LyricsView extends View {
             clearLyrics();
             return;
         }
-        ByteArrayInputStream is = new ByteArrayInputStream(lyricsText.getBytes(StandardCharsets.UTF_8));
-        setLyrics(LrcParser.parse(is));
+        setLyrics(LyricsCache.getInstance().getOrParse(lyricsText));
     }
 
     public void setLyrics(@Nullable List<LyricLine> lyrics) {
-        if (lyrics == null) {
-            this.lyrics = new ArrayList<>();
-        } else {
-            this.lyrics = lyrics;
-        }
-        
-        wrappedLines.clear();
-        lineCenterYMap.clear();
-        lineScrollYMap.clear();
+        setLyrics(CompiledLyrics.compile(lyrics));
+    }
+
+    public void setLyrics(@Nullable CompiledLyrics lyrics) {
+        lyricsGeneration++;
+        applyLyrics(lyrics);
+    }
+
+    private void applyLyrics(@Nullable CompiledLyrics lyrics) {
+        this.lyrics = (lyrics == null) ? CompiledLyrics.EMPTY : lyrics;
+        setTimeline(this.lyrics);
+        retainWordWidths(wordWidthCache, this.lyrics);
+        layoutTarget = this.lyrics;
+        layoutStableLines = this.lyrics.getLineCount();
+        shownLayout = null;
+        requestedLyrics = null;
+        layoutGeneration.incrementAndGet();
+
+        discardLineCaches();
+        virtualLayout = null;
+        wrappedLines = new ArrayList<>();
+        wrappedLineY = new float[0];
+        wordWidths = new float[0];
+        lineCenterY = new float[0];
+        lineScrollY = new float[0];
         totalContentHeight = 0;
         currentScrollY = 0;
         targetScrollY = 0;
@@ -382,10 +1081,27 @@ public class LyricsView extends View {
             clearLyrics();
             return;
         }
+        final int generation = ++lyricsGeneration;
         parsingExecutor.execute(() -> {
-            ByteArrayInputStream is = new ByteArrayInputStream(lyricsText.getBytes(StandardCharsets.UTF_8));
-            final List<LyricLine> result = LrcParser.parse(is);
-            mainHandler.post(() -> setLyrics(result));
+            LyricsCache cache = LyricsCache.getInstance();
+            long key = LyricsCache.hash(lyricsText);
+            CompiledLyrics cached = cache.get(key);
+            if (cached != null) {
+                mainHandler.post(() -> {
+                    if (generation == lyricsGeneration) applyLyrics(cached);
+                });
+                return;
+            }
+            StreamingListener listener = new StreamingListener(generation);
+            long start = System.nanoTime();
+            Trace.beginSection("LyricsView#parse");
+            try {
+                LrcParser.parse(lyricsText, listener);
+            } finally {
+                Trace.endSection();
+            }
+            reportParsed(System.nanoTime() - start, LyricsCache.utf8Length(lyricsText), listener.getResult().getLineCount());
+            cache.put(key, listener.getResult());
         });
     }
 
@@ -394,35 +1110,235 @@ public class LyricsView extends View {
             clearLyrics();
             return;
         }
+        final int generation = ++lyricsGeneration;
+        parsingExecutor.execute(() -> {
+            // The key is only known once the stream is consumed, so streams fill the cache for later loads
+            LyricsCache.HashingInputStream is = new LyricsCache.HashingInputStream(inputStream);
+            StreamingListener listener = new StreamingListener(generation);
+            long start = System.nanoTime();
+            Trace.beginSection("LyricsView#parse");
+            try {
+                LrcParser.parse(is, listener);
+            } finally {
+                Trace.endSection();
+            }
+            reportParsed(System.nanoTime() - start, is.getByteCount(), listener.getResult().getLineCount());
+            if (is.isFullyRead()) LyricsCache.getInstance().put(is.getHash(), listener.getResult());
+        });
+    }
+
+    // Runs on the parsing thread. Lines are merged there and published as immutable
+    // snapshots, so the first screen is laid out and drawn while the rest is still read. A
+    // snapshot only compiles the lines changed since the previous one, and while one waits
+    // for the UI thread later batches just accumulate into the next.
+    private class StreamingListener implements LrcParser.ParseListener {
+        private final int generation;
+        private final LyricsAccumulator accumulator = new LyricsAccumulator();
+        private final AtomicBoolean snapshotPending = new AtomicBoolean();
+        private CompiledLyrics latest = CompiledLyrics.EMPTY;
+        private boolean shown = false; // UI thread only
+
+        StreamingListener(int generation) {
+            this.generation = generation;
+        }
+
+        @Override
+        public void onLinesParsed(List<LyricLine> lines) {
+            accumulator.addAll(lines);
+            if (!snapshotPending.get()) publish();
+        }
+
+        @Override
+        public void onParseComplete() {
+            if (accumulator.getLines().isEmpty()) {
+                mainHandler.post(() -> {
+                    if (generation == lyricsGeneration) applyLyrics(null);
+                });
+                return;
+            }
+            publish();
+        }
+
+        private void publish() {
+            final int stableLines = accumulator.takeFirstChangedLine();
+            if (stableLines == latest.getLineCount() && stableLines == accumulator.getLines().size()) return;
+            final CompiledLyrics snapshot = CompiledLyrics.compile(latest, accumulator.getLines(), stableLines);
+            latest = snapshot;
+            snapshotPending.set(true);
+            mainHandler.post(() -> {
+                snapshotPending.set(false);
+                if (generation != lyricsGeneration) return;
+                if (!shown) {
+                    shown = true;
+                    applyLyrics(snapshot);
+                } else {
+                    updateStreamedLyrics(snapshot, stableLines);
+                }
+            });
+        }
+
+        CompiledLyrics getResult() {
+            return latest;
+        }
+    }
+
+    // Later batches keep the scroll position of what is already on screen. The previous
+    // batch stays visible until the new one is laid out.
+    private void updateStreamedLyrics(CompiledLyrics snapshot, int stableLines) {
+        retainWordWidths(wordWidthCache, snapshot);
+        layoutStableLines = Math.min(layoutStableLines, stableLines);
+        layoutTarget = snapshot;
+        requestLayout();
+    }
+
+    // Lyrics precompiled with LyricsBinaryWriter, e.g. a memory-mapped file
+    public void setCompiledLyrics(@Nullable ByteBuffer buffer) {
+        if (buffer == null) {
+            clearLyrics();
+            return;
+        }
+        try {
+            setLyrics(LyricsBinaryReader.read(buffer));
+        } catch (IOException e) {
+            Log.w(TAG, "Could not read compiled lyrics", e);
+            clearLyrics();
+        }
+    }
+
+    public void setCompiledLyricsAsync(@Nullable final File file) {
+        if (file == null) {
+            clearLyrics();
+            return;
+        }
+        final int generation = ++lyricsGeneration;
         parsingExecutor.execute(() -> {
-            final List<LyricLine> result = LrcParser.parse(inputStream);
-            mainHandler.post(() -> setLyrics(result));
+            CompiledLyrics result;
+            long start = System.nanoTime();
+            Trace.beginSection("LyricsView#parse");
+            try {
+                result = LyricsBinaryReader.read(file);
+                reportParsed(System.nanoTime() - start, file.length(), result.getLineCount());
+            } catch (IOException e) {
+                Log.w(TAG, "Could not read compiled lyrics from " + file, e);
+                result = null;
+            } finally {
+                Trace.endSection();
+            }
+            final CompiledLyrics loaded = result;
+            mainHandler.post(() -> {
+                if (generation == lyricsGeneration) applyLyrics(loaded);
+            });
         });
     }
 
+    private void setTimeline(CompiledLyrics lyrics) {
+        timeline = new LyricTimeline(lyrics);
+        timelineCursor = timeline.newCursor();
+    }
+
+    // Index over the lyrics currently shown, e.g. for the current line in a notification
+    public LyricTimeline getTimeline() {
+        return timeline;
+    }
+
     public void clearLyrics() {
-        setLyrics((List<LyricLine>) null);
+        setLyrics((CompiledLyrics) null);
     }
 
     public void updateTime(long timeMs) {
+        // Driving the time by hand turns the playback clock off
+        clockEnabled = false;
+        cancelClockFrame();
+        boolean changed = timeMs < drawnTimeMs || timeMs >= redrawAtMs;
         this.currentTime = timeMs;
+        if (changed) invalidateChanged();
+    }
+
+    // Alternative to calling updateTime() every frame: report the player state only when it
+    // changes (play, pause, seek, speed) and the view advances the time itself. Main thread only.
+    public void setPlaybackState(long positionMs, float speed, boolean playing) {
+        clockEnabled = true;
+        clockPositionMs = positionMs;
+        clockAnchorNanos = System.nanoTime();
+        clockSpeed = speed;
+        clockPlaying = playing;
+        currentTime = positionMs;
+        if (playing) scheduleClockFrame(0);
+        else cancelClockFrame();
         postInvalidateOnAnimation();
     }
 
+    private void onClockFrame(long frameTimeNanos) {
+        clockFramePosted = false;
+        if (!clockEnabled || !clockPlaying) return;
+        currentTime = clockTimeAt(frameTimeNanos);
+        if (currentTime >= redrawAtMs) {
+            invalidateChanged(); // onDraw schedules the next clock frame
+        } else {
+            scheduleClockFrameAt(redrawAtMs);
+        }
+    }
+
+    // frameTimeNanos is on the System.nanoTime() time base
+    private long clockTimeAt(long frameTimeNanos) {
+        // The frame may have started just before the state was reported
+        long elapsedNanos = Math.max(0, frameTimeNanos - clockAnchorNanos);
+        return clockPositionMs + (long) (elapsedNanos * (double) clockSpeed / 1_000_000L);
+    }
+
+    // Sleeps until the playback time reaches timeMs
+    private void scheduleClockFrameAt(long timeMs) {
+        if (timeMs == Long.MAX_VALUE || clockSpeed <= 0f) return;
+        scheduleClockFrame((long) Math.ceil((timeMs - currentTime) / (double) clockSpeed));
+    }
+
+    private void scheduleClockFrame(long delayMs) {
+        if (!isAttachedToWindow()) return;
+        Choreographer choreographer = Choreographer.getInstance();
+        choreographer.removeFrameCallback(clockFrameCallback);
+        choreographer.postFrameCallbackDelayed(clockFrameCallback, Math.max(0, delayMs));
+        clockFramePosted = true;
+    }
+
+    // Only the lines the last frame expected to change, if it was drawn in software, the list
+    // is at rest and the time moved forward by less than the horizon those expectations cover
+    private void invalidateChanged() {
+        boolean atRest = !isUserScrolling && !isFlinging && currentScrollY == targetScrollY;
+        long elapsed = currentTime - drawnTimeMs;
+        if (atRest && !Float.isNaN(dirtyTop) && elapsed >= 0 && elapsed <= DIRTY_HORIZON_MS) {
+            if (dirtyTop > dirtyBottom) return; // Nothing visible changes
+            int top = (int) Math.floor(dirtyTop - currentScrollY);
+            int bottom = (int) Math.ceil(dirtyBottom - currentScrollY);
+            postInvalidateOnAnimation(0, Math.max(0, top), getWidth(), Math.min(getHeight(), bottom));
+        } else {
+            postInvalidateOnAnimation();
+        }
+    }
+
+    private void cancelClockFrame() {
+        if (!clockFramePosted) return;
+        Choreographer.getInstance().removeFrameCallback(clockFrameCallback);
+        clockFramePosted = false;
+    }
+
     private boolean handleTap(float touchY) {
         if (seekListener == null || wrappedLines.isEmpty()) return false;
         float clickedContentY = touchY + currentScrollY;
-        Paint.FontMetrics fm = paintActive.getFontMetrics();
-        float verticalPadding = 30f;
-        for (WrappedLine wl : wrappedLines) {
-            float top = wl.y + fm.ascent - verticalPadding;
-            float bottom = wl.y + fm.descent + verticalPadding;
-            if (clickedContentY >= top && clickedContentY <= bottom) {
-                if (wl.parentLine.startTime != -1) {
-                    seekListener.onSeek(wl.parentLine.startTime);
-                    playSoundEffect(android.view.SoundEffectConstants.CLICK);
-                    return true;
-                }
+        float ascent = activeFontMetrics.ascent - TAP_PADDING;
+        float descent = activeFontMetrics.descent + TAP_PADDING;
+        // Hit boxes move down with y, so skip every line whose box ends above the tap
+        int low = 0, high = wrappedLineY.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (wrappedLineY[mid] + descent < clickedContentY) low = mid + 1;
+            else high = mid;
+        }
+        for (int i = low; i < wrappedLineY.length && wrappedLineY[i] + ascent <= clickedContentY; i++) {
+            long startTime = lyrics.getLineStartTime(wrappedLines.get(i).line);
+            if (startTime != -1) {
+                seekListener.onSeek(startTime);
+                playSoundEffect(android.view.SoundEffectConstants.CLICK);
+                return true;
             }
         }
         return false;
@@ -431,7 +1347,7 @@ public class LyricsView extends View {
     private boolean updateScrollLogic() {
         if (isFlinging) {
             if (scroller.computeScrollOffset()) {
-                currentScrollY = scroller.getCurrY();
+                currentScrollY = scroller.getCurrY() + flingOffsetY;
                 currentScrollY = Math.max(minScrollY, Math.min(currentScrollY, maxScrollY));
                 return true;
             } else {
@@ -442,33 +1358,21 @@ public class LyricsView extends View {
         if (isUserScrolling || isFlinging) return false;
 
         if (!lyrics.isEmpty()) {
-            int effectiveIndex = -1;
-            for (int i = 0; i < lyrics.size(); i++) {
-                if (currentTime >= lyrics.get(i).startTime) effectiveIndex = i;
-                else break;
-            }
-            effectiveIndex = Math.max(0, effectiveIndex);
-            LyricLine currentLine = lyrics.get(effectiveIndex);
+            int lineCount = lyrics.getLineCount();
+            boolean hasScrollTargets = lineScrollY.length == lineCount || virtualLayout != null;
+            int effectiveIndex = Math.max(0, timelineCursor.moveTo(currentTime));
 
-            if (currentLine.startTime == -1) return false;
+            if (lyrics.getLineStartTime(effectiveIndex) == -1) return false;
 
-            Float preCalcTarget = lineScrollYMap.get(currentLine);
-            if (preCalcTarget == null) preCalcTarget = 0f;
+            float preCalcTarget = hasScrollTargets ? getScrollTarget(effectiveIndex) : 0f;
             
             float desiredY = preCalcTarget - (getHeight() * biasY);
 
-            if (effectiveIndex + 1 < lyrics.size()) {
-                LyricLine nextLine = lyrics.get(effectiveIndex + 1);
-                if (nextLine.startTime != -1) {
-                    long timeUntilNext = nextLine.startTime - currentTime;
-                    if (timeUntilNext < SCROLL_ANTICIPATION_MS && timeUntilNext > 0) {
-                        float ratio = 1f - ((float) timeUntilNext / SCROLL_ANTICIPATION_MS);
-                        Float nextPreCalcTarget = lineScrollYMap.get(nextLine);
-                        if (nextPreCalcTarget != null) {
-                            float nextTargetY = nextPreCalcTarget - (getHeight() * biasY);
-                            desiredY = desiredY + (nextTargetY - desiredY) * ratio;
-                        }
-                    }
+            if (effectiveIndex + 1 < lineCount) {
+                float ratio = LyricTiming.scrollAnticipation(lyrics.getLineStartTime(effectiveIndex + 1), currentTime);
+                if (ratio > 0 && hasScrollTargets) {
+                    float nextTargetY = getScrollTarget(effectiveIndex + 1) - (getHeight() * biasY);
+                    desiredY = desiredY + (nextTargetY - desiredY) * ratio;
                 }
             }
             targetScrollY = Math.max(minScrollY, Math.min(desiredY, maxScrollY));
@@ -483,12 +1387,19 @@ public class LyricsView extends View {
         }
     }
 
+    // A virtual layout keeps moving line centers as it refines, so its targets are computed
+    // when needed instead of once per layout
+    private float getScrollTarget(int line) {
+        if (virtualLayout != null) return LyricTiming.scrollTarget(timeline, lineCenterY, line, scrollScratch);
+        return lineScrollY[line];
+    }
+
     @Override
     protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
         int width = MeasureSpec.getSize(widthMeasureSpec);
         int height = MeasureSpec.getSize(heightMeasureSpec);
-        if (width > 0 && !lyrics.isEmpty()) {
-            wrapLines(width);
+        if (width > 0 && !layoutTarget.isEmpty()) {
+            requestLineLayout(width, height);
             updateScrollBounds(height);
         }
         setMeasuredDimension(width, height);
@@ -517,177 +1428,161 @@ public class LyricsView extends View {
         if (maxScrollY < minScrollY) maxScrollY = minScrollY;
     }
 
-    private void wrapLines(int viewWidth) {
-        wrappedLines.clear();
-        lineCenterYMap.clear();
-        lineScrollYMap.clear();
-
-        float maxAllowedWidth = viewWidth - (padding * 2);
-        if (maxAllowedWidth <= 0) return;
-
-        float currentY = 0;
-        LyricLine previousParent = null;
-
-        for (int lineIdx = 0; lineIdx < lyrics.size(); lineIdx++) {
-            LyricLine line = lyrics.get(lineIdx);
-            long nextStartTime = -1;
-            if (lineIdx + 1 < lyrics.size()) nextStartTime = lyrics.get(lineIdx + 1).startTime;
-
-            List<LyricWord> currentLineWords = new ArrayList<>();
-            float currentLineWidth = 0;
-            float parentStartY = -1;
-            float parentLastLineY = -1;
-            float effectiveMeasureScale = line.isBackground ? (BG_SCALE_SIZE * BG_HORIZONTAL_STRETCH) : 1.0f;
-
-            int i = 0;
-            while (i < line.words.size()) {
-                List<LyricWord> cluster = new ArrayList<>();
-                float clusterWidth = 0;
-
-                LyricWord firstPiece = line.words.get(i);
-                firstPiece.width = paintActive.measureText(firstPiece.text);
-                
-                cluster.add(firstPiece);
-                clusterWidth += firstPiece.width * effectiveMeasureScale;
-                i++;
-
-                while (i < line.words.size()) {
-                    LyricWord lastAdded = cluster.get(cluster.size() - 1);
-                    if (lastAdded.text.endsWith(" ") || lastAdded.text.endsWith("\u3000") || lastAdded.text.endsWith("-")) {
-                        break;
-                    }
-                    LyricWord nextPiece = line.words.get(i);
-                    nextPiece.width = paintActive.measureText(nextPiece.text);
-                    cluster.add(nextPiece);
-                    clusterWidth += nextPiece.width * effectiveMeasureScale;
-                    i++;
-                }
-
-                if (currentLineWidth + clusterWidth > maxAllowedWidth && !currentLineWords.isEmpty()) {
-                    createWrappedLine(viewWidth, line, nextStartTime, currentLineWords, currentLineWidth, previousParent, currentY);
-                    
-                    if (parentStartY == -1) parentStartY = currentY + getSpacing(line, previousParent);
-                    currentY += getSpacing(line, previousParent);
-                    parentLastLineY = currentY;
-                    currentY += (line.isBackground ? textHeight * BG_SCALE_SIZE : textHeight);
-
-                    previousParent = line;
-                    currentLineWords.clear();
-                    currentLineWidth = 0;
-                }
-                currentLineWords.addAll(cluster);
-                currentLineWidth += clusterWidth;
+    // Lays the lines out on the layout thread unless a layout for the same lyrics, width and
+    // text paint is already showing or on its way
+    private void requestLineLayout(int viewWidth, int viewHeight) {
+        if (layoutTarget == requestedLyrics && viewWidth == requestedWidth && paintVersion == requestedPaintVersion) return;
+        requestedLyrics = layoutTarget;
+        requestedWidth = viewWidth;
+        requestedPaintVersion = paintVersion;
+
+        final int generation = layoutGeneration.incrementAndGet();
+        final LayoutSpec spec = new LayoutSpec(this, viewHeight);
+        final CompiledLyrics target = layoutTarget;
+        final LyricTimeline targetTimeline = (target == lyrics) ? timeline : null;
+        final int version = paintVersion;
+        // A streamed batch is wrapped on top of the layout on screen if it still fits it
+        final LineLayout base = (shownLayout != null && shownLayout.virtual == null && target != lyrics
+                && shownLayout.viewWidth == viewWidth && shownLayout.paintVersion == version) ? shownLayout : null;
+        final int stableLines = layoutStableLines;
+        LAYOUT_EXECUTOR.execute(() -> {
+            if (generation != layoutGeneration.get()) return; // Superseded before it started
+            long start = System.nanoTime();
+            Trace.beginSection("LyricsView#wrapLines");
+            final LineLayout result;
+            try {
+                LyricTimeline resultTimeline = (targetTimeline != null) ? targetTimeline : new LyricTimeline(target);
+                result = (base != null)
+                        ? spec.extend(base, target, resultTimeline, viewWidth, stableLines)
+                        : spec.build(target, resultTimeline, viewWidth);
+                result.viewWidth = viewWidth;
+                result.paintVersion = version;
+            } finally {
+                Trace.endSection();
             }
+            final long wrapNanos = System.nanoTime() - start;
+            mainHandler.post(() -> {
+                if (generation == layoutGeneration.get()) applyLineLayout(result, wrapNanos);
+            });
+        });
+    }
 
-            if (!currentLineWords.isEmpty()) {
-                createWrappedLine(viewWidth, line, nextStartTime, currentLineWords, currentLineWidth, previousParent, currentY);
+    // The only place a finished layout becomes visible. Lyrics, timeline and layout are swapped
+    // together, so drawing never mixes word indices of two different snapshots.
+    private void applyLineLayout(LineLayout layout, long wrapNanos) {
+        if (layout.lyrics != lyrics) {
+            lyrics = layout.lyrics;
+            timeline = layout.timeline;
+            timelineCursor = timeline.newCursor();
+        }
+        if (layout.lyrics == layoutTarget) layoutStableLines = layoutTarget.getLineCount();
+        shownLayout = layout;
+        discardLineCaches();
+        virtualLayout = layout.virtual;
+        wrappedLines = layout.wrappedLines;
+        wrappedLineY = layout.wrappedLineY;
+        wordWidths = layout.wordWidths;
+        lineCenterY = layout.lineCenterY;
+        lineScrollY = layout.lineScrollY;
+        totalContentHeight = layout.totalContentHeight;
+        updateScrollBounds(getHeight());
+        if (metricsListener != null) metricsListener.onLayout(wrapNanos, wrappedLines.size());
+        invalidate();
+    }
 
-                if (parentStartY == -1) parentStartY = currentY + getSpacing(line, previousParent);
-                currentY += getSpacing(line, previousParent);
-                parentLastLineY = currentY;
-                currentY += (line.isBackground ? textHeight * BG_SCALE_SIZE : textHeight);
-                previousParent = line;
-            }
+    // Line at the top of the viewport in the layout on screen
+    private int lineAtScrollY() {
+        if (virtualLayout != null) return virtualLayout.lineAt(currentScrollY);
+        int first = 0, last = wrappedLineY.length;
+        while (first < last) {
+            int mid = (first + last) >>> 1;
+            if (wrappedLineY[mid] < currentScrollY) first = mid + 1;
+            else last = mid;
+        }
+        return (first < wrappedLines.size()) ? wrappedLines.get(first).line : 0;
+    }
 
-            if (parentStartY != -1 && parentLastLineY != -1) {
-                float centerY = (parentStartY + parentLastLineY) / 2f;
-                lineCenterYMap.put(line, centerY);
+    // Asks the layout thread for the lines around the viewport once it gets within half a
+    // viewport of the edge of the wrapped window, so the next window is usually there before
+    // the viewport reaches the edge. Lines beyond the window are not drawn until it is.
+    private void updateVirtualWindow() {
+        final VirtualLayout layout = virtualLayout;
+        if (layout.windowRequested) return;
+        float viewTop = currentScrollY - textHeight;
+        float viewBottom = currentScrollY + getHeight();
+        // A viewport of margin on both sides, so a window lasts for a while of scrolling
+        float margin = getHeight();
+        if (layout.covers(viewTop - margin / 2, viewBottom + margin / 2)) return;
+
+        layout.windowRequested = true;
+        final int first = layout.lineAt(viewTop - margin);
+        final int end = layout.lineAt(viewBottom + margin) + 1;
+        final int generation = layoutGeneration.get();
+        LAYOUT_EXECUTOR.execute(() -> {
+            if (generation != layoutGeneration.get()) return; // A new layout replaces this one
+            long start = System.nanoTime();
+            Trace.beginSection("LyricsView#wrapLines");
+            final WrappedWindow window;
+            try {
+                window = layout.wrap(first, end);
+            } finally {
+                Trace.endSection();
             }
-        }
-        totalContentHeight = currentY;
-        calculateScrollTargets();
+            final long wrapNanos = System.nanoTime() - start;
+            mainHandler.post(() -> {
+                if (layout == virtualLayout) applyVirtualWindow(window, wrapNanos);
+            });
+        });
     }
-    
-    private float getSpacing(LyricLine line, LyricLine previousParent) {
-         if (previousParent == null) return 0;
-         else if (line.isBackground) return 0;
-         else if (previousParent.isBackground) return 0;
-         else return (previousParent == line) ? spacingBetweenWrappedLines : spacingBetweenLyrics;
-    }
-
-    private void createWrappedLine(int viewWidth, LyricLine line, long nextStartTime, List<LyricWord> words, float lineWidth, LyricLine previousParent, float currentY) {
-         WrappedLine wl = new WrappedLine(line, new ArrayList<>(words));
-         
-         if (line.isBackground) {
-             wl.xOffset = (viewWidth - lineWidth) / 2f - padding;
-         } else {
-             if (textGravity == 1) { 
-                 // Start (Left) Alignment: offset is 0
-                 wl.xOffset = 0; 
-             } else { 
-                 // Center Alignment
-                 wl.xOffset = (viewWidth - lineWidth) / 2f - padding;
-             }
-         }
-
-         float spacing = getSpacing(line, previousParent);
-         wl.y = currentY + spacing;
-         wl.nextStartTime = nextStartTime;
-         wrappedLines.add(wl);
-    }
-
-    private void calculateScrollTargets() {
-        for (int i = 0; i < lyrics.size(); i++) {
-            LyricLine current = lyrics.get(i);
-            Float centerCur = lineCenterYMap.get(current);
-            if (centerCur == null) centerCur = 0f;
-            if (current.startTime == -1) {
-                lineScrollYMap.put(current, centerCur);
-                continue;
-            }
-
-            float finalTarget = centerCur;
-            boolean overlapsPrev = false, overlapsPrevPrev = false;
-
-            if (i > 0) {
-                LyricLine prev = lyrics.get(i - 1);
-                if (current.startTime < prev.endTime) overlapsPrev = true;
-            }
-            if (i > 1) {
-                LyricLine prevPrev = lyrics.get(i - 2);
-                if (current.startTime < prevPrev.endTime) overlapsPrevPrev = true;
-            }
-
-            if (overlapsPrevPrev) {
-                Float centerMid = lineCenterYMap.get(lyrics.get(i - 1));
-                if (centerMid != null) finalTarget = centerMid;
-            } else if (overlapsPrev) {
-                Float centerPrev = lineCenterYMap.get(lyrics.get(i - 1));
-                if (centerPrev != null) finalTarget = (centerPrev + centerCur) / 2f;
-            }
-            lineScrollYMap.put(current, finalTarget);
-        }
-    }
-
-    private float getFocusRatio(LyricLine line, long nextStartTime) {
-        if (line.startTime == -1) return 1.0f;
-        if (currentTime >= line.startTime && currentTime <= line.endTime) return 1.0f;
-        if (currentTime < line.startTime) {
-            long diff = line.startTime - currentTime;
-            if (diff <= SCROLL_ANTICIPATION_MS)
-                return 1.0f - ((float) diff / SCROLL_ANTICIPATION_MS);
-            return 0.0f;
-        }
-        if (currentTime > line.endTime) {
-            float decay = 0.0f, antic = 0.0f;
-            long diff = currentTime - line.endTime;
-            if (diff < DECAY_DURATION_MS) decay = 1.0f - ((float) diff / DECAY_DURATION_MS);
-            if (nextStartTime != -1) {
-                long diffNext = nextStartTime - currentTime;
-                if (diffNext > SCROLL_ANTICIPATION_MS) antic = 1.0f;
-                else if (diffNext > 0) antic = (float) diffNext / SCROLL_ANTICIPATION_MS;
-            }
-            return Math.max(decay, antic);
-        }
-        return 0.0f;
+
+    // Rows above the viewport that differ from their estimate move the content, so the
+    // scroll position moves with it and what is on screen stays put
+    private void applyVirtualWindow(WrappedWindow window, long wrapNanos) {
+        VirtualLayout layout = virtualLayout;
+        layout.windowRequested = false;
+        int anchor = layout.lineAt(currentScrollY);
+        float anchorTop = layout.lineTop[anchor];
+        List<WrappedLine> replaced = layout.applyWindow(window);
+
+        float shift = layout.lineTop[anchor] - anchorTop;
+        currentScrollY += shift;
+        targetScrollY += shift;
+        flingOffsetY += shift;
+
+        for (int i = 0; i < replaced.size(); i++) discardLineCaches(replaced.get(i));
+        wrappedLines = layout.wrappedLines;
+        wrappedLineY = layout.wrappedLineY;
+        totalContentHeight = layout.lineTop[layout.lineTop.length - 1];
+        updateScrollBounds(getHeight());
+        if (metricsListener != null) metricsListener.onLayout(wrapNanos, wrappedLines.size());
+        invalidate();
+    }
+
+    private float getFocusRatio(int line, long nextStartTime) {
+        return LyricTiming.focusRatio(lyrics.getLineStartTime(line), lyrics.getLineEndTime(line), nextStartTime, currentTime);
     }
 
     @Override
     protected void onDraw(Canvas canvas) {
         super.onDraw(canvas);
-        
+
+        long start = System.nanoTime();
+        Trace.beginSection("LyricsView#draw");
+        int visibleLines;
+        try {
+            visibleLines = drawLyrics(canvas);
+        } finally {
+            Trace.endSection();
+        }
+        long drawNanos = System.nanoTime() - start;
+        if (drawNanos > frameBudgetNanos) jankCount++;
+        if (metricsListener != null) metricsListener.onFrameDrawn(drawNanos, visibleLines, jankCount);
+    }
+
+    // Returns how many wrapped lines were drawn
+    private int drawLyrics(Canvas canvas) {
         // Empty State
-        if (lyrics == null || lyrics.isEmpty()) {
+        if (lyrics.isEmpty()) {
             if (emptyMessage != null && !emptyMessage.isEmpty()) {
                  float centerX = getWidth() / 2f;
                  float centerY = getHeight() / 2f;
@@ -695,56 +1590,107 @@ public class LyricsView extends View {
                  float textY = centerY - ((paintEmpty.descent() + paintEmpty.ascent()) / 2);
                  canvas.drawText(emptyMessage, centerX, textY, paintEmpty);
             }
-            return;
+            redrawAtMs = Long.MAX_VALUE;
+            dirtyTop = Float.NaN;
+            return 0;
         }
 
-        long now = System.currentTimeMillis();
-        frameCount++;
-        if (now - lastFpsTime >= 1000) {
-            currentFps = frameCount;
-            frameCount = 0;
-            lastFpsTime = now;
+        if (wrappedLines.isEmpty() && virtualLayout == null) {
+            redrawAtMs = Long.MAX_VALUE;
+            dirtyTop = Float.NaN;
+            return 0;
         }
         
-        if (wrappedLines == null || wrappedLines.isEmpty()) return;
-        
         boolean animatingScroll = updateScrollLogic();
+        if (virtualLayout != null) updateVirtualWindow();
         boolean animatingGlow = false;
 
+        // Earliest time after currentTime at which something on screen changes
+        nextChangeMs = Long.MAX_VALUE;
+        trackDirty = !canvas.isHardwareAccelerated();
+        dirtyTop = Float.POSITIVE_INFINITY;
+        dirtyBottom = Float.NEGATIVE_INFINITY;
+        // Moving on to the next line scrolls everything
+        candidateTop = Float.NaN;
+        candidateBottom = Float.NaN;
+        int nextLine = timelineCursor.getNextLine();
+        if (nextLine != -1) {
+            long nextLineStart = lyrics.getLineStartTime(nextLine);
+            considerChange(nextLineStart - LyricTiming.SCROLL_ANTICIPATION_MS);
+            considerChange(nextLineStart);
+        }
+
         canvas.save();
         canvas.translate(0, -currentScrollY);
 
         float viewTop = currentScrollY - textHeight;
         float viewBottom = currentScrollY + getHeight();
 
-        for (WrappedLine wl : wrappedLines) {
+        char[] text = lyrics.getText();
+
+        int soundingCount = timeline.activeLines(currentTime, soundingLines);
+        if (soundingCount > soundingLines.length) {
+            soundingLines = new int[Integer.highestOneBit(soundingCount) << 1];
+            soundingCount = timeline.activeLines(currentTime, soundingLines);
+        }
+        int sounding = 0;
+        boolean useDisplayLists = Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q && canvas.isHardwareAccelerated();
+
+        int first = 0, last = wrappedLineY.length;
+        while (first < last) {
+            int mid = (first + last) >>> 1;
+            if (wrappedLineY[mid] < viewTop) first = mid + 1;
+            else last = mid;
+        }
+
+        int index = first;
+        for (; index < wrappedLineY.length; index++) {
+            WrappedLine wl = wrappedLines.get(index);
             float y = wl.y;
-            if (y > viewBottom || y < viewTop) continue;
+            if (y > viewBottom) break;
+
+            if (trackDirty) {
+                // Glow and blur reach beyond the text
+                float glowPadding = GLOW_PADDING + bgVocalBlurRadius;
+                candidateTop = y + activeFontMetrics.ascent - glowPadding;
+                candidateBottom = y + activeFontMetrics.descent + glowPadding;
+            }
+            boolean lineAnimating = false;
+
+            int line = wl.line;
+            long lineStart = lyrics.getLineStartTime(line);
+            long lineEnd = lyrics.getLineEndTime(line);
+            boolean isBackground = lyrics.isBackground(line);
+            boolean isWordSynced = lyrics.isWordSynced(line);
 
-            float focusRatio = getFocusRatio(wl.parentLine, wl.nextStartTime);
+            // Wrapped lines come in line order, so the sounding lines are merged in as we go
+            while (sounding < soundingCount && soundingLines[sounding] < line) sounding++;
+            boolean isTimeActive = sounding < soundingCount && soundingLines[sounding] == line;
+
+            float focusRatio = isTimeActive ? 1.0f : getFocusRatio(line, wl.nextStartTime);
             focusRatio = Math.max(0f, Math.min(1f, focusRatio));
 
             float targetScale;
 
-            if (wl.parentLine.isBackground) {
+            if (isBackground) {
                 targetScale = BG_SCALE_SIZE;
             } else {
                 targetScale = (INACTIVE_SCALE / activeTextScale) + ((1.0f - (INACTIVE_SCALE / activeTextScale)) * focusRatio);
             }
 
-            boolean isPlain = (wl.parentLine.startTime == -1);
-            boolean isTimeActive = (currentTime >= wl.parentLine.startTime && currentTime <= wl.parentLine.endTime);
-            boolean isTimePast = (currentTime > wl.parentLine.endTime);
-            boolean isV2 = (wl.parentLine.vocalType == 2);
+            boolean isPlain = (lineStart == -1);
+            if (!isPlain) considerLineChanges(lineStart, lineEnd, wl.nextStartTime);
+            boolean isTimePast = (currentTime > lineEnd);
+            boolean isV2 = (lyrics.getVocalType(line) == 2);
 
-            Paint currentPaintActive = wl.parentLine.isBackground ? paintActiveBG : paintActive;
-            Paint currentPaintDefault = wl.parentLine.isBackground ? paintDefaultBG : paintDefault;
-            Paint currentPaintFillV2 = wl.parentLine.isBackground ? paintFillV2BG : paintFillV2;
+            Paint currentPaintActive = isBackground ? paintActiveBG : paintActive;
+            Paint currentPaintDefault = isBackground ? paintDefaultBG : paintDefault;
+            Paint currentPaintFillV2 = isBackground ? paintFillV2BG : paintFillV2;
             
             int targetAlpha = 255;
-            if (!wl.parentLine.isBackground) {
-                if (isTimePast && wl.parentLine.startTime != -1) {
-                    if (!wl.parentLine.isWordSynced) {
+            if (!isBackground) {
+                if (isTimePast && lineStart != -1) {
+                    if (!isWordSynced) {
                         float adjustedRatio = (float) Math.pow(focusRatio, 3);
                         targetAlpha = (int) (102 + (255 - 102) * adjustedRatio);
                     } else {
@@ -759,137 +1705,324 @@ public class LyricsView extends View {
             canvas.save();
             canvas.scale(targetScale, targetScale, x, y);
 
-            for (LyricWord word : wl.words) {
-                float wordWidth = word.width;
-                if (wl.parentLine.isBackground) wordWidth *= BG_HORIZONTAL_STRETCH;
-
+            if (!isTimeActive) {
+                drawStableLine(canvas, wl, x, y, targetScale, useDisplayLists, isPlain, isTimePast, isWordSynced, isBackground, isV2, focusRatio, targetAlpha);
+            } else {
+                // Only lines being sung are drawn word by word
                 int dispersedAlpha = 255;
-
-                if (wl.parentLine.isBackground) {
+                int fadingAlpha = 255;
+                boolean isFading = false;
+                if (isBackground) {
                     dispersedAlpha = 120;
                     currentPaintActive.setAlpha(dispersedAlpha);
                     currentPaintDefault.setAlpha(dispersedAlpha);
-                    
-                    if (wl.parentLine.isBackground) {
-                        paintFillBG.setAlpha(dispersedAlpha);
-                        paintFillV2BG.setAlpha(dispersedAlpha);
-                        paintBloomBG.setAlpha(dispersedAlpha);
+
+                    float fadeOutFactor = 1.0f;
+                    long lineDuration = lineEnd - lineStart;
+                    if (lineDuration > 0) {
+                        long lineElapsed = currentTime - lineStart;
+                        float completion = (float) lineElapsed / lineDuration;
+                        if (completion > 0.9f) {
+                            fadeOutFactor = 1.0f - ((completion - 0.9f) / 0.1f);
+                            fadeOutFactor = Math.max(0f, fadeOutFactor);
+                        }
                     }
+                    fadingAlpha = (int) (dispersedAlpha * fadeOutFactor);
+                    isFading = fadeOutFactor < 1.0f;
+                    if (!isFading && lineDuration > 0) considerChange(lineStart + (long) (lineDuration * 0.9f));
                 }
 
-                if (isPlain) {
-                    canvas.drawText(word.text, x, y, currentPaintActive);
-                } else if (isTimeActive && currentTime >= word.time) {
-                    if (wl.parentLine.isBackground) {
-                        float fadeOutFactor = 1.0f;
-                        long lineDuration = wl.parentLine.endTime - wl.parentLine.startTime;
-                        if (lineDuration > 0) {
-                            long lineElapsed = currentTime - wl.parentLine.startTime;
-                            float completion = (float) lineElapsed / lineDuration;
-                            if (completion > 0.9f) {
-                                fadeOutFactor = 1.0f - ((completion - 0.9f) / 0.1f);
-                                fadeOutFactor = Math.max(0f, fadeOutFactor);
-                            }
-                        }
+                for (int w = wl.firstWord; w < wl.endWord; w++) {
+                    int textStart = lyrics.getWordTextStart(w);
+                    int textLength = lyrics.getWordTextLength(w);
+                    float wordWidth = wordWidths[w];
+                    if (isBackground) wordWidth *= BG_HORIZONTAL_STRETCH;
 
-                        int fadingAlpha = (int) (dispersedAlpha * fadeOutFactor);
-                        animatingGlow = true;
-                        drawActiveWord(canvas, word, wl, x, y, wordWidth, fadingAlpha);
-                    } else {
-                        if (wl.parentLine.isWordSynced) {
-                            animatingGlow = true;
-                            drawActiveWord(canvas, word, wl, x, y, wordWidth, 255);
+                    considerChange(lyrics.getWordTime(w));
+
+                    if (currentTime >= lyrics.getWordTime(w)) {
+                        if (isBackground) {
+                            if (isFading) lineAnimating = true;
+                            if (drawActiveWord(canvas, w, line, x, y, wordWidth, fadingAlpha)) lineAnimating = true;
+                        } else if (isWordSynced) {
+                            if (drawActiveWord(canvas, w, line, x, y, wordWidth, 255)) lineAnimating = true;
                         } else {
-                            if (isV2) canvas.drawText(word.text, x, y, currentPaintFillV2);
-                            else canvas.drawText(word.text, x, y, currentPaintActive);
+                            if (isV2) canvas.drawText(text, textStart, textLength, x, y, currentPaintFillV2);
+                            else canvas.drawText(text, textStart, textLength, x, y, currentPaintActive);
                         }
-                    }
-                } else if (isTimeActive) {
-                    canvas.drawText(word.text, x, y, currentPaintDefault);
-                } else if (isTimePast) {
-                    if (focusRatio > 0.01f) {
-                        Paint activeP = currentPaintActive; 
-                        int originalColor = activeP.getColor();
-                        if (isV2) activeP.setColor(colorSecondaryVocal);
-                        else activeP.setColor(colorActive);
-
-                        int finalAlpha = targetAlpha;
-                        if (wl.parentLine.isBackground) {
-                            finalAlpha = (int) ((targetAlpha / 255f) * (dispersedAlpha / 255f) * 255);
-                        }
-
-                        activeP.setAlpha(finalAlpha);
-                        canvas.drawText(word.text, x, y, activeP);
-
-                        activeP.setAlpha(255);
-                        activeP.setColor(originalColor);
-                    } else {
-                        canvas.drawText(word.text, x, y, currentPaintDefault);
-                    }
-                } else {
-                    if (!wl.parentLine.isWordSynced && focusRatio > 0 && !wl.parentLine.isBackground) {
-                        int futureAlpha = (int) (102 + (255 - 102) * focusRatio);
-                        futureAlpha = Math.max(102, Math.min(255, futureAlpha));
-                        currentPaintActive.setAlpha(futureAlpha);
-                        canvas.drawText(word.text, x, y, currentPaintActive);
-                        currentPaintActive.setAlpha(255);
                     } else {
-                        canvas.drawText(word.text, x, y, currentPaintDefault);
+                        canvas.drawText(text, textStart, textLength, x, y, currentPaintDefault);
                     }
+                    x += wordWidth;
                 }
 
-                if (wl.parentLine.isBackground) {
+                if (isBackground) {
                     currentPaintActive.setAlpha(255);
                     currentPaintDefault.setAlpha(102);
-                    paintFillBG.setAlpha(255);
-                    paintFillV2BG.setAlpha(255);
-                    paintBloomBG.setAlpha(255);
                 }
-
-                x += wordWidth;
             }
             canvas.restore();
             
             if (focusRatio > 0.0f && focusRatio < 1.0f) {
+                lineAnimating = true;
+            }
+            if (lineAnimating) {
                 animatingGlow = true;
+                includeDirty(candidateTop, candidateBottom);
             }
         }
         canvas.restore();
 
-        if (animatingScroll || animatingGlow) {
-            postInvalidateOnAnimation();
+        if (useDisplayLists && Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            trimDisplayLists(viewTop - getHeight(), viewBottom + getHeight());
+        }
+
+        boolean animating = animatingScroll || animatingGlow;
+        drawnTimeMs = currentTime;
+        // A frame that animates only changes once the time moves on
+        redrawAtMs = animating ? currentTime + 1 : nextChangeMs;
+        if (animatingScroll || !trackDirty) dirtyTop = Float.NaN;
+        updateLayerPolicy(animating);
+        if (clockEnabled && clockPlaying) {
+            if (animating) scheduleClockFrame(0);
+            else scheduleClockFrameAt(redrawAtMs);
+        } else if (animatingScroll) {
+            // Without a running clock (updateTime() or a paused clock) the time stays put until
+            // the next call, so fill, glow and focus wait for it and only the scroll keeps drawing
+            invalidateChanged();
+        }
+        return index - first;
+    }
+
+    // A line that is not being sung is one paint over all its words, so it is drawn as a
+    // single text run. Only the alpha of lit past and upcoming lines changes from frame to
+    // frame, which the node or the mask paint applies on replay.
+    private void drawStableLine(Canvas canvas, WrappedLine wl, float x, float y, float scale, boolean useDisplayLists, boolean isPlain,
+                                boolean isTimePast, boolean isWordSynced, boolean isBackground, boolean isV2, float focusRatio, int targetAlpha) {
+        int content = CONTENT_DEFAULT;
+        float alpha = 1f;
+        if (isPlain) {
+            content = CONTENT_ACTIVE;
+        } else if (isTimePast) {
+            if (focusRatio > 0.01f) {
+                content = isV2 ? CONTENT_ACTIVE_V2 : CONTENT_ACTIVE;
+                alpha = targetAlpha / 255f;
+            }
+        } else if (!isWordSynced && focusRatio > 0 && !isBackground) {
+            int futureAlpha = (int) (102 + (255 - 102) * focusRatio);
+            content = CONTENT_ACTIVE;
+            alpha = Math.max(102, Math.min(255, futureAlpha)) / 255f;
+        }
+
+        if (isBackground) {
+            drawBackgroundMask(canvas, wl, x, y, scale, content, alpha);
+        } else if (useDisplayLists && Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            drawLineDisplayList(canvas, wl, x, y, content, alpha);
+        } else {
+            Paint paint = (content == CONTENT_DEFAULT) ? paintDefault : paintActive;
+            int originalColor = paint.getColor();
+            if (content == CONTENT_ACTIVE_V2) paint.setColor(colorSecondaryVocal);
+            if (content != CONTENT_DEFAULT) paint.setAlpha((int) (255 * alpha));
+            drawLineText(canvas, wl, x, y, paint);
+            paint.setColor(originalColor);
+        }
+    }
+
+    // The words of a line are contiguous in the lyrics text, so the line is one run. It is
+    // shaped as a whole, so kerning between word pieces can move glyphs by a fraction of a
+    // pixel compared to drawing word by word.
+    private void drawLineText(Canvas canvas, WrappedLine wl, float x, float y, Paint paint) {
+        int lastWord = wl.endWord - 1;
+        int textStart = lyrics.getWordTextStart(wl.firstWord);
+        int textEnd = lyrics.getWordTextStart(lastWord) + lyrics.getWordTextLength(lastWord);
+        canvas.drawText(lyrics.getText(), textStart, textEnd - textStart, x, y, paint);
+    }
+
+    // Background lines never get here, they are drawn from masks
+    @RequiresApi(Build.VERSION_CODES.Q)
+    private void drawLineDisplayList(Canvas canvas, WrappedLine wl, float x, float y, int content, float alpha) {
+        LineDisplayList displayList = wl.displayList;
+        if (displayList == null) {
+            displayList = new LineDisplayList();
+            wl.displayList = displayList;
+            recordedLines.add(wl);
+        }
+        if (displayList.content != content || !displayList.node.hasDisplayList()) {
+            recordStableLine(displayList, wl, content);
+        }
+        displayList.node.setAlpha(alpha);
+
+        canvas.translate(x - GLOW_RADIUS, y + activeFontMetrics.ascent - GLOW_RADIUS);
+        canvas.drawRenderNode(displayList.node);
+    }
+
+    @RequiresApi(Build.VERSION_CODES.Q)
+    private void recordStableLine(LineDisplayList displayList, WrappedLine wl, int content) {
+        Paint paint = (content == CONTENT_DEFAULT) ? paintDefault : paintActive;
+        int originalColor = paint.getColor();
+        if (content == CONTENT_ACTIVE_V2) paint.setColor(colorSecondaryVocal);
+        if (content != CONTENT_DEFAULT) paint.setAlpha(255);
+
+        float lineWidth = 0;
+        for (int w = wl.firstWord; w < wl.endWord; w++) lineWidth += wordWidths[w];
+        int width = (int) Math.ceil(lineWidth + GLOW_RADIUS * 2);
+        int height = (int) Math.ceil(textHeight + GLOW_RADIUS * 2);
+
+        RenderNode node = displayList.node;
+        node.setPosition(0, 0, width, height);
+        RecordingCanvas recording = node.beginRecording(width, height);
+        try {
+            recording.translate(GLOW_RADIUS, GLOW_RADIUS - activeFontMetrics.ascent);
+            drawLineText(recording, wl, 0, 0, paint);
+        } finally {
+            node.endRecording();
+            paint.setColor(originalColor);
+        }
+        displayList.content = content;
+    }
+
+    private void drawBackgroundMask(Canvas canvas, WrappedLine wl, float x, float y, float scale, int content, float alpha) {
+        // What the blur can reach beyond the glyphs
+        float blurPadding = bgVocalBlurRadius * 2 + 2;
+        Bitmap mask = bgMaskCache.get(wl);
+        if (mask == null || wl.bgMaskScale != scale) {
+            mask = renderBackgroundMask(wl, scale, blurPadding);
+            wl.bgMaskScale = scale;
+            bgMaskCache.put(wl, mask);
         }
+
+        int color = colorInactive;
+        if (content == CONTENT_ACTIVE) color = colorActive;
+        else if (content == CONTENT_ACTIVE_V2) color = colorSecondaryVocal;
+        paintBgMask.setColor(color);
+        // 120 is the alpha background words are drawn with
+        paintBgMask.setAlpha((int) (120 * alpha));
+
+        // The canvas is already scaled, so the mask covers its pixels 1:1 again
+        float left = x - blurPadding;
+        float top = y + activeFontMetrics.ascent - blurPadding;
+        bgMaskBounds.set(left, top, left + mask.getWidth() / scale, top + mask.getHeight() / scale);
+        canvas.drawBitmap(mask, null, bgMaskBounds, paintBgMask);
+    }
+
+    private Bitmap renderBackgroundMask(WrappedLine wl, float scale, float blurPadding) {
+        float lineWidth = 0;
+        for (int w = wl.firstWord; w < wl.endWord; w++) lineWidth += wordWidths[w] * BG_HORIZONTAL_STRETCH;
+        int width = Math.max(1, (int) Math.ceil((lineWidth + blurPadding * 2) * scale));
+        int height = Math.max(1, (int) Math.ceil((textHeight + blurPadding * 2) * scale));
+
+        Bitmap mask = Bitmap.createBitmap(width, height, Bitmap.Config.ALPHA_8);
+        Canvas maskCanvas = new Canvas(mask);
+        maskCanvas.scale(scale, scale);
+        maskCanvas.translate(blurPadding, blurPadding - activeFontMetrics.ascent);
+
+        // Full coverage; color and alpha come from paintBgMask when the mask is drawn
+        Paint paint = new Paint(paintActiveBG);
+        paint.setColor(Color.WHITE);
+        drawLineText(maskCanvas, wl, 0, 0, paint);
+        return mask;
+    }
+
+    // Keeps display lists for lines between top and bottom (content coordinates)
+    @RequiresApi(Build.VERSION_CODES.Q)
+    private void trimDisplayLists(float top, float bottom) {
+        for (int i = recordedLines.size() - 1; i >= 0; i--) {
+            WrappedLine wl = recordedLines.get(i);
+            if (wl.y >= top && wl.y <= bottom) continue;
+            wl.displayList.node.discardDisplayList();
+            wl.displayList = null;
+            recordedLines.remove(i);
+        }
+    }
+
+    private void discardLineCaches() {
+        // An empty range keeps nothing
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) trimDisplayLists(Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY);
+        bgMaskCache.evictAll();
+        glowSprites.clear();
+        glowSpriteBytes = 0;
+    }
+
+    // Glow sprites are per word, so they stay
+    private void discardLineCaches(WrappedLine wl) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q && wl.displayList != null) {
+            wl.displayList.node.discardDisplayList();
+            wl.displayList = null;
+            recordedLines.remove(wl);
+        }
+        bgMaskCache.remove(wl);
+    }
+
+    // Drops the layer after a few animated frames in a row and brings it back once the
+    // next change is far enough away, so short pauses between words don't flip it
+    private void updateLayerPolicy(boolean animating) {
+        int layerType = wantedLayerType;
+        if (animating) {
+            animatedFrames++;
+            if (animatedFrames >= LAYER_MAX_ANIMATED_FRAMES) layerType = LAYER_TYPE_NONE;
+        } else {
+            animatedFrames = 0;
+            boolean longStatic = redrawAtMs == Long.MAX_VALUE || redrawAtMs - currentTime >= LAYER_MIN_STATIC_MS;
+            if (longStatic) layerType = LAYER_TYPE_HARDWARE;
+        }
+        if (layerType != wantedLayerType) {
+            wantedLayerType = layerType;
+            // Changing the layer invalidates the view, so not while drawing
+            removeCallbacks(layerTypeUpdate);
+            post(layerTypeUpdate);
+        }
+    }
+
+    // Where the focus ramps, the active state and the past state of a line can change
+    private void considerLineChanges(long lineStart, long lineEnd, long nextStartTime) {
+        considerChange(lineStart - LyricTiming.SCROLL_ANTICIPATION_MS);
+        considerChange(lineStart);
+        considerChange(lineEnd);
+        considerChange(lineEnd + LyricTiming.DECAY_DURATION_MS);
+        if (nextStartTime != -1) {
+            considerChange(nextStartTime - LyricTiming.SCROLL_ANTICIPATION_MS);
+            considerChange(nextStartTime);
+        }
+    }
+
+    // Checks are either t >= timeMs or t > timeMs, so the frame after timeMs matters too.
+    // Whatever changes soon also marks candidateTop..candidateBottom as dirty.
+    private void considerChange(long timeMs) {
+        long changeMs = timeMs > currentTime ? timeMs : timeMs + 1;
+        if (changeMs <= currentTime) return;
+        if (changeMs < nextChangeMs) nextChangeMs = changeMs;
+        if (changeMs - currentTime <= DIRTY_HORIZON_MS) includeDirty(candidateTop, candidateBottom);
     }
 
-    private void drawActiveWord(Canvas canvas, LyricWord word, WrappedLine wl, float x, float y, float wordWidth, int alphaOverride) {
-        boolean isV2 = (wl.parentLine.vocalType == 2);
+    // Math.min and Math.max keep NaN, so one full-view change makes the whole view dirty
+    private void includeDirty(float top, float bottom) {
+        if (!trackDirty) return;
+        dirtyTop = Math.min(dirtyTop, top);
+        dirtyBottom = Math.max(dirtyBottom, bottom);
+    }
+
+    // Returns true while the word is still filling, i.e. the next frame will differ
+    private boolean drawActiveWord(Canvas canvas, int word, int line, float x, float y, float wordWidth, int alphaOverride) {
+        boolean isV2 = (lyrics.getVocalType(line) == 2);
+        boolean isBackground = lyrics.isBackground(line);
         
         Paint targetFill = isV2 
-                ? (wl.parentLine.isBackground ? paintFillV2BG : paintFillV2) 
-                : (wl.parentLine.isBackground ? paintFillBG : paintFill);
+                ? (isBackground ? paintFillV2BG : paintFillV2) 
+                : (isBackground ? paintFillBG : paintFill);
                 
-        Paint targetBloom = isV2 
-                ? (wl.parentLine.isBackground ? paintBloomV2BG : paintBloomV2)
-                : (wl.parentLine.isBackground ? paintBloomBG : paintBloom);
-        
         if(isV2) targetFill.setColor(colorSecondaryVocal);
         else targetFill.setColor(colorActive);
                 
         LinearGradient targetGrad = isV2 ? masterGradientV2 : masterGradient;
-        Paint currentDefault = wl.parentLine.isBackground ? paintDefaultBG : paintDefault;
+        Paint currentDefault = isBackground ? paintDefaultBG : paintDefault;
 
-        long nextWordTime = wl.parentLine.endTime;
-        int wordIndex = wl.parentLine.words.indexOf(word);
-        if (wordIndex < wl.parentLine.words.size() - 1) {
-            nextWordTime = wl.parentLine.words.get(wordIndex + 1).time;
-        }
+        float progress = lyrics.getWordProgress(word, currentTime);
 
-        long duration = nextWordTime - word.time;
-        if (duration <= 0) duration = 1;
-        long elapsed = currentTime - word.time;
-        float progress = Math.min(1.0f, (float) elapsed / duration);
+        char[] text = lyrics.getText();
+        int textStart = lyrics.getWordTextStart(word);
+        int textLength = lyrics.getWordTextLength(word);
 
-        canvas.drawText(word.text, x, y, currentDefault);
+        canvas.drawText(text, textStart, textLength, x, y, currentDefault);
 
         if (targetGrad != null) {
             float edgeWidth = Math.min(120f, wordWidth);
@@ -900,10 +2033,7 @@ public class LyricsView extends View {
             shaderMatrix.postTranslate(currentX - edgeWidth, 0);
             targetGrad.setLocalMatrix(shaderMatrix);
 
-            targetFill.setShader(targetGrad);
-            targetFill.setAlpha(alphaOverride);
-            canvas.drawText(word.text, x, y, targetFill);
-
+            int fillAlpha = alphaOverride;
             if (progress < 1.0f) {
                 float bloomAlpha = 1.0f;
                 if (progress >= 0.7f) {
@@ -912,17 +2042,63 @@ public class LyricsView extends View {
                 }
 
                 int finalBloomAlpha = (int) (alphaOverride * bloomAlpha);
-                int shadowColor = isV2 ? colorSecondaryVocal : colorActive;
-                int fadedShadowColor = Color.argb(finalBloomAlpha, Color.red(shadowColor), Color.green(shadowColor), Color.blue(shadowColor));
-                
-                targetBloom.setShadowLayer(25, 0, 0, fadedShadowColor);
-                targetBloom.setShader(targetGrad);
-                targetBloom.setAlpha(finalBloomAlpha);
-                canvas.drawText(word.text, x, y, targetBloom);
-                targetBloom.setShadowLayer(25, 0, 0, shadowColor);
+                drawGlow(canvas, word, isBackground, x, y, wordWidth, isV2 ? colorSecondaryVocal : colorActive, finalBloomAlpha);
+                // The bloom used to draw the gradient text a second time on top of the fill,
+                // one fill with both alphas composited looks the same
+                fillAlpha = 255 - (255 - alphaOverride) * (255 - finalBloomAlpha) / 255;
             }
+
+            targetFill.setShader(targetGrad);
+            targetFill.setAlpha(fillAlpha);
+            canvas.drawText(text, textStart, textLength, x, y, targetFill);
             targetFill.setAlpha(255);
         }
+        return progress < 1.0f;
+    }
+
+    private void drawGlow(Canvas canvas, int word, boolean isBackground, float x, float y, float wordWidth, int color, int alpha) {
+        Bitmap sprite = glowSprites.get(word);
+        if (sprite == null) {
+            sprite = renderGlowSprite(word, isBackground, wordWidth);
+            addGlowSprite(word, sprite);
+        }
+
+        paintGlow.setColor(color);
+        paintGlow.setAlpha(alpha);
+        float left = x - GLOW_PADDING;
+        float top = y + activeFontMetrics.ascent - GLOW_PADDING;
+        glowBounds.set(left, top, left + sprite.getWidth(), top + sprite.getHeight());
+        canvas.drawBitmap(sprite, null, glowBounds, paintGlow);
+    }
+
+    // Over budget, the sprites of the words farthest from the new one go first: the filling
+    // words only move forward slowly, or jump on a seek and leave everything behind
+    private void addGlowSprite(int word, Bitmap sprite) {
+        glowSpriteBytes += sprite.getAllocationByteCount();
+        while (glowSpriteBytes > GLOW_SPRITE_CACHE_BYTES && glowSprites.size() > 0) {
+            int last = glowSprites.size() - 1;
+            int index = (word - glowSprites.keyAt(0) > glowSprites.keyAt(last) - word) ? 0 : last;
+            glowSpriteBytes -= glowSprites.valueAt(index).getAllocationByteCount();
+            glowSprites.removeAt(index);
+        }
+        glowSprites.put(word, sprite);
+    }
+
+    // Rendered in text coordinates; the line scale only shrinks it, which a blur hides
+    private Bitmap renderGlowSprite(int word, boolean isBackground, float wordWidth) {
+        int width = Math.max(1, (int) Math.ceil(wordWidth + GLOW_PADDING * 2));
+        int height = Math.max(1, (int) Math.ceil(textHeight + GLOW_PADDING * 2));
+
+        Bitmap sprite = Bitmap.createBitmap(width, height, Bitmap.Config.ALPHA_8);
+        Canvas spriteCanvas = new Canvas(sprite);
+        spriteCanvas.translate(GLOW_PADDING, GLOW_PADDING - activeFontMetrics.ascent);
+
+        // Same glyphs as the fill, blurred like the shadow layer that used to draw the glow
+        Paint paint = new Paint(isBackground ? paintBloomBG : paintBloom);
+        paint.setColor(Color.WHITE);
+        paint.setMaskFilter(glowBlurFilter);
+        spriteCanvas.drawText(lyrics.getText(), lyrics.getWordTextStart(word), lyrics.getWordTextLength(word), 0, 0, paint);
+        return sprite;
     }
 
     @Override
@@ -959,6 +2135,7 @@ public class LyricsView extends View {
                     float velocityY = velocityTracker.getYVelocity();
                     if (Math.abs(velocityY) > minFlingVelocity) {
                         isFlinging = true;
+                        flingOffsetY = 0;
                         scroller.fling(0, (int) currentScrollY, 0, (int) -velocityY, 0, 0, (int) minScrollY, (int) maxScrollY);
                         postInvalidateOnAnimation();
                     } else {
@@ -974,9 +2151,19 @@ public class LyricsView extends View {
         return super.onTouchEvent(event);
     }
     
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        Display display = getDisplay();
+        float refreshRate = display != null ? display.getRefreshRate() : 0f;
+        frameBudgetNanos = refreshRate > 0f ? (long) (1_000_000_000L / refreshRate) : DEFAULT_FRAME_BUDGET_NANOS;
+        if (clockEnabled && clockPlaying) scheduleClockFrame(0);
+    }
+
     @Override
     protected void onDetachedFromWindow() {
         super.onDetachedFromWindow();
+        cancelClockFrame();
         if (parsingExecutor != null && !parsingExecutor.isShutdown()) {
             parsingExecutor.shutdownNow();
         }